@@ -1,18 +1,87 @@
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import java.util.regex.Pattern;
 
 /**
  * GitHub Activity CLI - Fetch and display recent GitHub user activity
- * Usage: java GitHubActivity <username>
+ * Usage: java GitHubActivity [options] <username> [token]
+ * <p>
+ * Requires JDK 21 or later (virtual threads). Build with
+ * {@code javac GitHubActivity.java}; to enable SIMD JSON scanning, also
+ * compile {@code VectorStructuralIndexer.java} with
+ * {@code --add-modules jdk.incubator.vector} and run with the same flag.
  */
 
  /*
@@ -21,401 +90,4772 @@ import java.util.regex.Pattern;
   */
 public class GitHubActivity {
     
-    private static final String BASE_URL = "https://api.github.com/users/%s/events";
+    private static final String API_URL = "https://api.github.com";
+    private static final String EVENTS_PATH = "/users/%s/events";
     private static final String USER_AGENT = "GitHub-Activity-CLI/1.0";
     private static final int TIMEOUT = 10000; // 10 seconds
-    
-    public static void main(String[] args) {
-        if (args.length < 1 || args.length > 2) {
-            System.out.println("Usage: java GitHubActivity <username> [token]");
-            System.out.println("Example: java GitHubActivity kamranahmedse <token>");
-            System.exit(1);
-        }
+    private static final int DEFAULT_CONCURRENCY = 16;
+    private static final int MAX_DISPLAYED = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_POLL_INTERVAL = 60; // seconds
+    private static final int MAX_SEEN_IDS = 1000;
+    private static final int DEFAULT_CACHE_SIZE = 100; // MB
+    private static final EventQuery DEFAULT_QUERY = new EventQuery(0, null);
+    private static final Pattern NEXT_LINK_PATTERN = Pattern.compile("<([^>]+)>\\s*;\\s*rel=\"next\"");
+    private static final int DEFAULT_RETRIES = 2;
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final int MAX_RATE_LIMIT_RETRIES = 5;
+    private static final int DEFAULT_MAX_RATE_LIMIT_WAIT = 60; // seconds
+    private static final BufferPool BUFFER_POOL = new BufferPool();
+    private static final ExecutorService BACKGROUND_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final StructuralIndexer VECTOR_INDEXER = StructuralIndexer.loadVector();
+    private static final int ARCHIVE_CHUNK_SIZE = 1024 * 1024;
+    private static final long ARCHIVE_MAP_WINDOW = 64L * 1024 * 1024;
+    private static final StringDictionary DICTIONARY = new StringDictionary(1 << 16);
 
-        String username = args[0].trim();
-        if (username.isEmpty()) {
-            System.out.println("Error: Username cannot be empty");
-            System.exit(1);
-        }
+    private final String apiUrl;
+    private final Transport transport;
+    private DiskCache diskCache;
+    private final FetchStats stats = new FetchStats();
+    private final ConditionalCache conditionalCache = new ConditionalCache();
+    private final TokenPool tokenPool = new TokenPool();
+    private final RetryPolicy retryPolicy = new RetryPolicy();
+    private final SingleFlight<List<GitHubEvent>> inFlightLookups = new SingleFlight<>();
+    private final ArchiveReader archiveReader = new ArchiveReader();
+    private boolean showCommits;
 
-        // Accept token as argument or from environment variable
-        String token = args.length == 2 ? args[1] : System.getenv("GITHUB_TOKEN");
+    public GitHubActivity() {
+        this(API_URL, false);
+    }
 
-        GitHubActivity cli = new GitHubActivity();
-        try {
-            System.out.println("Fetching activity for GitHub user: " + username + "...");
-            String jsonResponse = cli.fetchUserActivity(username, token);
-            List<String> activities = cli.parseAndFormatActivity(jsonResponse);
-            cli.displayActivity(username, activities);
-        } catch (Exception e) {
-            System.out.println("Error: " + e.getMessage());
-            System.exit(1);
-        }
+    /**
+     * @param apiUrl Base URL of the GitHub API (e.g. a local stub server)
+     * @param legacyTransport true to open a fresh HttpURLConnection per request
+     *                        instead of using the shared HTTP/2 client
+     */
+    public GitHubActivity(String apiUrl, boolean legacyTransport) {
+        this(apiUrl, legacyTransport ? new UrlConnectionTransport() : new HttpClientTransport());
     }
-    
+
     /**
-     * Fetch recent activity for a GitHub user
-     * @param username GitHub username
-     * @return JSON response as string
-     * @throws Exception if request fails
+     * @param apiUrl Base URL of the GitHub API
+     * @param transport Transport that sends the requests
      */
-    public String fetchUserActivity(String username, String token) throws Exception {
-        String urlString = String.format(BASE_URL, username);
-        URL url;
+    public GitHubActivity(String apiUrl, Transport transport) {
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.transport = transport;
+    }
 
+    public static void main(String[] args) {
+        Options options;
         try {
-            URI uri = new URI(urlString);
-            url = uri.toURL();
-        } catch (URISyntaxException e) {
-            throw new Exception("Invalid URL: " + e.getMessage());
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            if (e.getMessage() != null) {
+                System.out.println("Error: " + e.getMessage());
+            }
+            printUsage();
+            System.exit(1);
+            return;
         }
 
-        HttpURLConnection connection = null;
-        BufferedReader reader = null;
-
+        Transport transport = options.legacyTransport ? new UrlConnectionTransport() : new HttpClientTransport();
         try {
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("User-Agent", USER_AGENT);
-            connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
-            if (token != null && !token.isEmpty()) {
-                connection.setRequestProperty("Authorization", "Bearer " + token);
+            if (options.replayDir != null) {
+                transport = new ReplayTransport(Paths.get(options.replayDir), options.replayLatency,
+                        options.replayBandwidth * 1024);
+            } else if (options.recordDir != null) {
+                transport = new RecordingTransport(transport, Paths.get(options.recordDir));
             }
-            connection.setConnectTimeout(TIMEOUT);
-            connection.setReadTimeout(TIMEOUT);
-
-            int responseCode = connection.getResponseCode();
+        } catch (IOException e) {
+            System.out.println("Error: Could not create recording directory: " + e.getMessage());
+            System.exit(1);
+        }
 
-            if (responseCode == 404) {
-                throw new Exception("User '" + username + "' not found");
-            } else if (responseCode == 403) {
-                throw new Exception("API rate limit exceeded. Please try again later");
-            } else if (responseCode != 200) {
-                throw new Exception("GitHub API error: HTTP " + responseCode);
+        GitHubActivity cli = new GitHubActivity(options.apiUrl, transport);
+        if (options.cacheDir != null) {
+            try {
+                cli.diskCache = new DiskCache(Paths.get(options.cacheDir), options.cacheSize * 1024L * 1024L,
+                        options.cacheTtl * 1000L);
+            } catch (IOException e) {
+                System.out.println("Error: Could not create cache directory: " + e.getMessage());
+                System.exit(1);
             }
+        }
+        cli.tokenPool.setMaxWaitMillis(options.maxRateLimitWait * 1000L);
+        cli.retryPolicy.setMaxRetries(options.retries);
+        cli.retryPolicy.setHedging(options.hedge);
+        cli.showCommits = options.commits;
+        cli.retryPolicy.setDeadlineMillis(options.deadline);
+
+        // Accept tokens as arguments or from environment variables
+        List<String> tokens = new ArrayList<>(options.tokens);
+        if (tokens.isEmpty() && System.getenv("GITHUB_TOKENS") != null) {
+            tokens.addAll(Arrays.asList(System.getenv("GITHUB_TOKENS").split(",")));
+        }
+        if (tokens.isEmpty() && System.getenv("GITHUB_TOKEN") != null) {
+            tokens.add(System.getenv("GITHUB_TOKEN"));
+        }
+        for (String token : tokens) {
+            cli.tokenPool.add(token.trim());
+        }
 
-            reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            StringBuilder response = new StringBuilder();
-            String line;
+        int status;
+        // Archive mode reads the users file too, which otherwise implies --batch
+        if (!options.archives.isEmpty()) {
+            status = cli.runArchive(options);
+        } else if (options.watch) {
+            status = cli.runWatch(options);
+        } else if (options.batch) {
+            status = cli.runBatch(options);
+        } else {
+            status = cli.runSingle(options.usernames.get(0), options.query());
+        }
 
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
+        if (options.stats && !options.archives.isEmpty()) {
+            cli.archiveReader.print();
+        } else if (options.stats) {
+            cli.stats.print(cli.transport.toString());
+            cli.conditionalCache.print();
+            if (cli.diskCache != null) {
+                cli.diskCache.print();
             }
+            cli.tokenPool.print();
+            cli.retryPolicy.print();
+            cli.inFlightLookups.print();
+        }
+        System.exit(status);
+    }
 
-            return response.toString();
+    /**
+     * Fetch and display the activity of a single user, using the token pool
+     * @param username GitHub username
+     * @param query Limit and time boundary of the lookup
+     * @return Process exit status
+     */
+    private int runSingle(String username, EventQuery query) {
+        if (username.isEmpty()) {
+            System.out.println("Error: Username cannot be empty");
+            return 1;
+        }
 
-        } catch (IOException e) {
-            throw new Exception("Network error: " + e.getMessage());
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    // Ignore
+        try {
+            System.out.println("Fetching activity for GitHub user: " + username + "...");
+            if (diskCache == null) {
+                // Print each activity as soon as its event has arrived
+                int[] printed = {0};
+                streamEvents(username, null, query, activity -> {
+                    if (activity.isEmpty() || printed[0] >= query.displayLimit()) {
+                        return;
+                    }
+                    if (printed[0]++ == 0) {
+                        System.out.print(formatActivityHeader(username));
+                    }
+                    System.out.println(activity);
+                });
+                if (printed[0] == 0) {
+                    System.out.print(formatActivityReport(username, Collections.emptyList(), 0));
                 }
+                return 0;
             }
-            if (connection != null) {
-                connection.disconnect();
+            List<String> activities = formatActivities(fetchEvents(username, null, query));
+            System.out.print(formatActivityReport(username, activities, query.displayLimit()));
+            return 0;
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Poll the events of every user until the process is stopped, printing
+     * only events that have not been seen before. Each user is polled on its
+     * own virtual thread no more often than the server's X-Poll-Interval (or
+     * --interval, if longer), and polls are conditional so an unchanged feed
+     * costs neither rate limit nor parsing.
+     * @param options Parsed options holding the usernames and poll interval
+     * @return Process exit status
+     */
+    private int runWatch(Options options) {
+        List<String> usernames;
+        try {
+            usernames = options.readUsernames();
+        } catch (IOException e) {
+            System.out.println("Error: Could not read usernames: " + e.getMessage());
+            return 1;
+        }
+        if (usernames.isEmpty()) {
+            System.out.println("Error: No usernames given");
+            return 1;
+        }
+
+        System.out.println("Watching activity for " + usernames.size() + " GitHub user"
+                + (usernames.size() != 1 ? "s" : "") + " (Ctrl+C to stop)...");
+        Semaphore permits = new Semaphore(options.concurrency);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String username : usernames) {
+                executor.submit(() -> {
+                    Set<String> seenIds = new LinkedHashSet<>();
+                    while (!Thread.currentThread().isInterrupted()) {
+                        int interval = options.pollInterval;
+                        try {
+                            PageResult page;
+                            permits.acquire();
+                            try {
+                                page = requestPage(eventsUri(username, DEFAULT_QUERY), username, null);
+                            } finally {
+                                permits.release();
+                            }
+                            interval = Math.max(interval, page.getPollInterval());
+                            if (!page.isNotModified()) {
+                                printNewEvents(username, page.getEvents(), seenIds);
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        } catch (Exception e) {
+                            synchronized (System.out) {
+                                System.out.println("Error for user '" + username + "': " + e.getMessage());
+                            }
+                        }
+
+                        try {
+                            Thread.sleep(interval * 1000L);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                });
             }
         }
+        return 0;
     }
-    
+
     /**
-     * Parse JSON response and format activities into readable strings
-     * @param jsonResponse Raw JSON response from GitHub API
-     * @return List of formatted activity strings
+     * Print the events that are newer than anything seen so far, oldest first
+     * @param username GitHub username
+     * @param events Events of the latest poll, newest first
+     * @param seenIds Ids of events already printed; updated in place
      */
-    public List<String> parseAndFormatActivity(String jsonResponse) {
-        List<String> activities = new ArrayList<>();
-        
-        // Parse JSON manually using regex patterns (since we can't use external libraries)
-        List<GitHubEvent> events = parseEvents(jsonResponse);
-        
+    private void printNewEvents(String username, List<GitHubEvent> events, Set<String> seenIds) {
+        List<String> fresh = new ArrayList<>();
         for (GitHubEvent event : events) {
+            if (event.getId() == null) {
+                continue;
+            }
+            if (!seenIds.add(event.getId())) {
+                // Feeds are newest first, so everything from here on was seen before
+                break;
+            }
             String activity = formatEvent(event);
             if (activity != null && !activity.isEmpty()) {
-                activities.add(activity);
+                fresh.add(activity);
             }
         }
-        
-        return activities;
-    }
-    
-    /**
-     * Parse GitHub events from JSON response using regex
-     * @param jsonResponse JSON string
-     * @return List of GitHubEvent objects
-     */
-    private List<GitHubEvent> parseEvents(String jsonResponse) {
-        List<GitHubEvent> events = new ArrayList<>();
-        
-        // Split by events (each event is enclosed in {})
-        Pattern eventPattern = Pattern.compile("\\{[^{}]*(?:\\{[^{}]*\\}[^{}]*)*\\}");
-        Matcher eventMatcher = eventPattern.matcher(jsonResponse);
-        
-        while (eventMatcher.find()) {
-            String eventJson = eventMatcher.group();
-            GitHubEvent event = parseEvent(eventJson);
-            if (event != null) {
-                events.add(event);
+
+        Iterator<String> oldest = seenIds.iterator();
+        while (seenIds.size() > MAX_SEEN_IDS) {
+            oldest.next();
+            oldest.remove();
+        }
+
+        if (!fresh.isEmpty()) {
+            Collections.reverse(fresh);
+            synchronized (System.out) {
+                for (String activity : fresh) {
+                    System.out.println("[" + username + "] " + activity);
+                }
             }
         }
-        
-        return events;
     }
-    
+
     /**
-     * Parse a single event from JSON string
-     * @param eventJson JSON string for single event
-     * @return GitHubEvent object
+     * Fetch the activity of many users concurrently, one virtual thread per
+     * user. At most {@code options.concurrency} requests are in flight at once
+     * and each report is printed as soon as its user finishes.
+     * Requests are spread over the token pool.
+     * @param options Parsed options holding the usernames and concurrency cap
+     * @return Process exit status (1 if any lookup failed)
      */
-    private GitHubEvent parseEvent(String eventJson) {
+    private int runBatch(Options options) {
+        List<String> usernames;
         try {
-            GitHubEvent event = new GitHubEvent();
-            
-            // Extract type
-            String type = extractJsonValue(eventJson, "type");
-            event.setType(type);
-            
-            // Extract repo name
-            String repoName = extractJsonValue(eventJson, "name", "repo");
-            event.setRepoName(repoName);
-            
-            // Extract payload information based on event type
-            if ("PushEvent".equals(type)) {
-                int commitCount = countCommits(eventJson);
-                event.setCommitCount(commitCount);
-            } else if ("IssuesEvent".equals(type) || "PullRequestEvent".equals(type)) {
-                String action = extractJsonValue(eventJson, "action", "payload");
-                event.setAction(action);
-            } else if ("CreateEvent".equals(type) || "DeleteEvent".equals(type)) {
-                String refType = extractJsonValue(eventJson, "ref_type", "payload");
-                String ref = extractJsonValue(eventJson, "ref", "payload");
-                event.setRefType(refType);
-                event.setRef(ref);
-            } else if ("ReleaseEvent".equals(type)) {
-                String action = extractJsonValue(eventJson, "action", "payload");
-                String tagName = extractJsonValue(eventJson, "tag_name", "release", "payload");
-                event.setAction(action);
-                event.setRef(tagName);
-            } else if ("PullRequestEvent".equals(type)) {
-                boolean merged = eventJson.contains("\"merged\":true");
-                event.setMerged(merged);
-            }
-            
-            return event;
-        } catch (Exception e) {
-            return null;
+            usernames = options.readUsernames();
+        } catch (IOException e) {
+            System.out.println("Error: Could not read usernames: " + e.getMessage());
+            return 1;
         }
-    }
-    
-    /**
-     * Extract JSON value using regex
-     * @param json JSON string
-     * @param key Key to extract
-     * @param parentKeys Optional parent keys for nested values
-     * @return Extracted value or null
-     */
-    private String extractJsonValue(String json, String key, String... parentKeys) {
-        String pattern;
-        if (parentKeys.length > 0) {
-            // For nested values, create a more complex pattern
-            StringBuilder patternBuilder = new StringBuilder();
-            for (String parent : parentKeys) {
-                patternBuilder.append("\"").append(parent).append("\"\\s*:\\s*\\{[^}]*");
-            }
-            pattern = patternBuilder.toString() + "\"" + key + "\"\\s*:\\s*\"([^\"]+)\"";
-        } else {
-            pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]+)\"";
+        if (usernames.isEmpty()) {
+            System.out.println("Error: No usernames given");
+            return 1;
         }
-        
-        Pattern p = Pattern.compile(pattern);
-        Matcher m = p.matcher(json);
-        if (m.find()) {
-            return m.group(1);
+
+        System.out.println("Fetching activity for " + usernames.size() + " GitHub users...");
+        EventQuery query = options.query();
+        Semaphore permits = new Semaphore(options.concurrency);
+        AtomicInteger failures = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String username : usernames) {
+                executor.submit(() -> {
+                    String report;
+                    try {
+                        List<GitHubEvent> events;
+                        permits.acquire();
+                        try {
+                            events = fetchEvents(username, null, query);
+                        } finally {
+                            permits.release();
+                        }
+                        report = formatActivityReport(username, formatActivities(events), query.displayLimit());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        report = "Error for user '" + username + "': " + e.getMessage() + System.lineSeparator();
+                    }
+                    synchronized (System.out) {
+                        System.out.println();
+                        System.out.print(report);
+                    }
+                });
+            }
         }
-        return null;
+
+        if (failures.get() > 0) {
+            System.out.println();
+            System.out.println(failures.get() + " of " + usernames.size() + " lookups failed");
+            return 1;
+        }
+        return 0;
     }
-    
+
     /**
-     * Count commits in a push event
-     * @param eventJson Event JSON string
-     * @return Number of commits
+     * Display the activity of every user found in local GH Archive dumps
+     * @param options Parsed options holding the usernames and archive paths
+     * @return Process exit status
      */
-    private int countCommits(String eventJson) {
-        Pattern commitPattern = Pattern.compile("\"commits\"\\s*:\\s*\\[(.*?)\\]");
-        Matcher commitMatcher = commitPattern.matcher(eventJson);
-        if (commitMatcher.find()) {
-            String commitsArray = commitMatcher.group(1);
-            if (commitsArray.trim().isEmpty()) {
-                return 0;
-            }
-            // Count commit objects by counting opening braces
-            Pattern commitObjectPattern = Pattern.compile("\\{");
-            Matcher objectMatcher = commitObjectPattern.matcher(commitsArray);
-            int count = 0;
-            while (objectMatcher.find()) {
-                count++;
+    private int runArchive(Options options) {
+        List<String> usernames;
+        List<Path> files;
+        try {
+            usernames = options.readUsernames();
+            files = ArchiveReader.listFiles(options.archives);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return 1;
+        }
+        if (usernames.isEmpty()) {
+            System.out.println("Error: No usernames given");
+            return 1;
+        }
+
+        System.out.println("Reading activity for " + usernames.size() + " GitHub user"
+                + (usernames.size() == 1 ? "" : "s") + " from " + files.size() + " archive file"
+                + (files.size() == 1 ? "" : "s") + "...");
+        EventBatch events;
+        try {
+            events = archiveReader.read(files, usernames);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return 1;
+        }
+
+        // Archives are in chronological order; reports list the newest first
+        EventQuery query = options.query();
+        int[] newestFirst = events.newestFirst();
+        for (String username : usernames) {
+            // Only the rows that are displayed are turned back into events
+            List<String> activities = new ArrayList<>();
+            for (int row : events.select(newestFirst, username, query.sinceMillis())) {
+                String activity = formatEvent(events.event(row));
+                if (activity != null && !activity.isEmpty()) {
+                    activities.add(activity);
+                    if (activities.size() == query.displayLimit()) {
+                        break;
+                    }
+                }
             }
-            return count;
+            System.out.println();
+            System.out.print(formatActivityReport(username, activities, query.displayLimit()));
         }
-        return 1; // Default to 1 if we can't parse
+        return 0;
     }
-    
+
+    private static void printUsage() {
+        System.out.println("Usage: java GitHubActivity [options] <username> [token]");
+        System.out.println("Example: java GitHubActivity kamranahmedse <token>");
+        System.out.println("       java GitHubActivity --batch [options] [username...]");
+        System.out.println("       java GitHubActivity --watch [options] [username...]");
+        System.out.println("       java GitHubActivity --archive <path> [options] [username...]");
+        System.out.println("Example: java GitHubActivity --batch --users-file team.txt --concurrency 32");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println("  --token <token>          GitHub access token; repeat to rotate between several tokens");
+        System.out.println("                           (default: comma separated $GITHUB_TOKENS, or $GITHUB_TOKEN)");
+        System.out.println("  --api-url <url>          GitHub API base URL (default: " + API_URL + ")");
+        System.out.println("  --legacy-http            Use a new HttpURLConnection per request instead of the shared HTTP/2 client");
+        System.out.println("  --stats                  Print request statistics when finished");
+        System.out.println("  --commits                List the commits of each push below it (not in archive mode)");
+        System.out.println("  --limit <n>              Follow result pages until n events are found, and show up to n");
+        System.out.println("  --since <time>           Follow result pages back to an ISO-8601 time or date (e.g. 2024-05-01)");
+        System.out.println("  --max-wait <seconds>     Longest pause to wait out a rate limit before giving up (default: "
+                + DEFAULT_MAX_RATE_LIMIT_WAIT + ")");
+        System.out.println("  --retries <n>            Retries of failed requests, with jittered backoff (default: "
+                + DEFAULT_RETRIES + ")");
+        System.out.println("  --hedge                  Send a second request when the first is slower than the recent p95");
+        System.out.println("  --deadline <ms>          Overall time limit per request, including retries and hedges");
+        System.out.println("  --cache-dir <dir>        Keep responses in an on-disk cache shared between runs");
+        System.out.println("  --cache-ttl <seconds>    Lifetime of cached responses (default: the response's max-age, or 60)");
+        System.out.println("  --cache-size <MB>        Size limit of the disk cache (default: " + DEFAULT_CACHE_SIZE + ")");
+        System.out.println("  --record <dir>           Save every response to a directory");
+        System.out.println("  --replay <dir>           Serve recorded responses instead of using the network");
+        System.out.println("  --replay-latency <ms>    Simulated latency of replayed responses");
+        System.out.println("  --replay-bandwidth <KB/s> Simulated bandwidth of replayed responses");
+        System.out.println();
+        System.out.println("Batch mode:");
+        System.out.println("  --batch                  Look up every username given on the command line");
+        System.out.println("  --users-file <path>      Also read usernames from a file, one per line ('-' for stdin)");
+        System.out.println("  --concurrency <n>        Maximum concurrent requests (default: " + DEFAULT_CONCURRENCY + ")");
+        System.out.println();
+        System.out.println("Watch mode:");
+        System.out.println("  --watch                  Keep polling the given users and print only new events");
+        System.out.println("  --interval <seconds>     Minimum time between polls of a user (default: " + DEFAULT_POLL_INTERVAL
+                + "; the server's X-Poll-Interval wins if longer)");
+        System.out.println();
+        System.out.println("Archive mode:");
+        System.out.println("  --archive <path>         Read events of the given users from a GH Archive dump (.json.gz or .json)");
+        System.out.println("                           or a directory of dumps instead of the API; repeat for more");
+        System.out.println();
+        System.out.println("Requires Java 21 or later. Run with --add-modules jdk.incubator.vector to enable SIMD JSON scanning");
+        System.out.println("(VectorStructuralIndexer.java must then be compiled with the same flag).");
+    }
+
     /**
-     * Format a single GitHub event into a readable string
-     * @param event GitHubEvent object
-     * @return Formatted activity string
+     * Command line options
      */
-    private String formatEvent(GitHubEvent event) {
-        if (event.getType() == null || event.getRepoName() == null) {
-            return null;
-        }
-        
-        String type = event.getType();
-        String repo = event.getRepoName();
-        
-        switch (type) {
-            case "PushEvent":
-                int commits = event.getCommitCount();
-                return String.format("- Pushed %d commit%s to %s", 
-                    commits, commits != 1 ? "s" : "", repo);
-                
-            case "IssuesEvent":
-                String action = event.getAction();
-                if ("opened".equals(action)) {
-                    return "- Opened a new issue in " + repo;
-                } else if ("closed".equals(action)) {
-                    return "- Closed an issue in " + repo;
-                } else if (action != null) {
-                    return "- " + capitalize(action) + " an issue in " + repo;
+    private static class Options {
+        private final List<String> usernames = new ArrayList<>();
+        private String usersFile;
+        private final List<String> tokens = new ArrayList<>();
+        private String apiUrl = API_URL;
+        private boolean legacyTransport;
+        private boolean stats;
+        private boolean batch;
+        private int concurrency = DEFAULT_CONCURRENCY;
+        private int limit;
+        private Instant since;
+        private int maxRateLimitWait = DEFAULT_MAX_RATE_LIMIT_WAIT;
+        private int retries = DEFAULT_RETRIES;
+        private boolean hedge;
+        private boolean commits;
+        private int deadline;
+        private boolean watch;
+        private String recordDir;
+        private String replayDir;
+        private int replayLatency;
+        private int replayBandwidth;
+        private String cacheDir;
+        private int cacheTtl;
+        private int cacheSize = DEFAULT_CACHE_SIZE;
+        private int pollInterval = DEFAULT_POLL_INTERVAL;
+        private final List<String> archives = new ArrayList<>();
+
+        /**
+         * Parse command line arguments
+         * @param args Arguments passed to main
+         * @return Parsed options
+         * @throws IllegalArgumentException if the arguments are invalid
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            List<String> positional = new ArrayList<>();
+
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--api-url":
+                        options.apiUrl = requireValue(args, ++i, arg);
+                        break;
+                    case "--legacy-http":
+                        options.legacyTransport = true;
+                        break;
+                    case "--stats":
+                        options.stats = true;
+                        break;
+                    case "--token":
+                        options.tokens.add(requireValue(args, ++i, arg));
+                        break;
+                    case "--batch":
+                        options.batch = true;
+                        break;
+                    case "--users-file":
+                        options.usersFile = requireValue(args, ++i, arg);
+                        options.batch = true;
+                        break;
+                    case "--concurrency":
+                        options.concurrency = requirePositiveInt(args, ++i, arg);
+                        break;
+                    case "--limit":
+                        options.limit = requirePositiveInt(args, ++i, arg);
+                        break;
+                    case "--since":
+                        options.since = requireInstant(args, ++i, arg);
+                        break;
+                    case "--max-wait":
+                        options.maxRateLimitWait = requirePositiveInt(args, ++i, arg);
+                        break;
+                    case "--retries":
+                        options.retries = requireNonNegativeInt(args, ++i, arg);
+                        break;
+                    case "--hedge":
+                        options.hedge = true;
+                        break;
+                    case "--commits":
+                        options.commits = true;
+                        break;
+                    case "--deadline":
+                        options.deadline = requirePositiveInt(args, ++i, arg);
+                        break;
+                    case "--watch":
+                        options.watch = true;
+                        break;
+                    case "--interval":
+                        options.pollInterval = requirePositiveInt(args, ++i, arg);
+                        break;
+                    case "--record":
+                        options.recordDir = requireValue(args, ++i, arg);
+                        break;
+                    case "--replay":
+                        options.replayDir = requireValue(args, ++i, arg);
+                        break;
+                    case "--replay-latency":
+                        options.replayLatency = requireNonNegativeInt(args, ++i, arg);
+                        break;
+                    case "--replay-bandwidth":
+                        options.replayBandwidth = requireNonNegativeInt(args, ++i, arg);
+                        break;
+                    case "--cache-dir":
+                        options.cacheDir = requireValue(args, ++i, arg);
+                        break;
+                    case "--cache-ttl":
+                        options.cacheTtl = requirePositiveInt(args, ++i, arg);
+                        break;
+                    case "--cache-size":
+                        options.cacheSize = requirePositiveInt(args, ++i, arg);
+                        break;
+                    case "--archive":
+                        options.archives.add(requireValue(args, ++i, arg));
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + arg);
+                        }
+                        positional.add(arg);
                 }
-                break;
-                
-            case "WatchEvent":
-                return "- Starred " + repo;
-                
-            case "ForkEvent":
-                return "- Forked " + repo;
-                
-            case "CreateEvent":
-                String refType = event.getRefType();
-                if ("repository".equals(refType)) {
-                    return "- Created repository " + repo;
-                } else if ("branch".equals(refType)) {
-                    String branch = event.getRef();
-                    return "- Created branch " + (branch != null ? branch : "unknown") + " in " + repo;
-                } else if ("tag".equals(refType)) {
-                    String tag = event.getRef();
-                    return "- Created tag " + (tag != null ? tag : "unknown") + " in " + repo;
+            }
+
+            if (options.batch || options.watch || !options.archives.isEmpty()) {
+                for (String username : positional) {
+                    options.usernames.add(username.trim());
                 }
-                break;
-                
-            case "DeleteEvent":
-                String delRefType = event.getRefType() != null ? event.getRefType() : "branch";
-                String delRef = event.getRef() != null ? event.getRef() : "unknown";
-                return "- Deleted " + delRefType + " " + delRef + " in " + repo;
-                
-            case "PullRequestEvent":
-                String prAction = event.getAction();
-                if ("opened".equals(prAction)) {
-                    return "- Opened a pull request in " + repo;
-                } else if ("closed".equals(prAction)) {
-                    if (event.isMerged()) {
-                        return "- Merged a pull request in " + repo;
-                    } else {
-                        return "- Closed a pull request in " + repo;
+                return options;
+            }
+
+            if (positional.isEmpty() || positional.size() > 2) {
+                throw new IllegalArgumentException();
+            }
+            options.usernames.add(positional.get(0).trim());
+            if (positional.size() == 2) {
+                options.tokens.add(positional.get(1));
+            }
+            return options;
+        }
+
+        EventQuery query() {
+            return new EventQuery(limit, since);
+        }
+
+        /**
+         * Collect the batch usernames from the command line and the users file.
+         * Blank lines and lines starting with '#' are skipped, duplicates are dropped.
+         * @return Usernames in the order they were given
+         * @throws IOException if the users file cannot be read
+         */
+        List<String> readUsernames() throws IOException {
+            Set<String> result = new LinkedHashSet<>(usernames);
+            if (usersFile != null) {
+                BufferedReader reader = "-".equals(usersFile)
+                        ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                        : Files.newBufferedReader(Paths.get(usersFile), StandardCharsets.UTF_8);
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty() && !line.startsWith("#")) {
+                            result.add(line);
+                        }
                     }
-                } else if (prAction != null) {
-                    return "- " + capitalize(prAction) + " a pull request in " + repo;
+                } finally {
+                    reader.close();
                 }
-                break;
-                
-            case "ReleaseEvent":
-                String releaseAction = event.getAction();
-                if ("published".equals(releaseAction)) {
-                    String tagName = event.getRef() != null ? event.getRef() : "unknown";
-                    return "- Published release " + tagName + " in " + repo;
+            }
+            result.remove("");
+            return new ArrayList<>(result);
+        }
+
+        private static String requireValue(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            return args[index];
+        }
+
+        private static int requirePositiveInt(String[] args, int index, String option) {
+            int parsed = requireNonNegativeInt(args, index, option);
+            if (parsed == 0) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": 0");
+            }
+            return parsed;
+        }
+
+        private static int requireNonNegativeInt(String[] args, int index, String option) {
+            String value = requireValue(args, index, option);
+            try {
+                int parsed = Integer.parseInt(value);
+                if (parsed >= 0) {
+                    return parsed;
                 }
-                break;
-                
-            case "PublicEvent":
-                return "- Made " + repo + " public";
-                
-            default:
-                // For unhandled event types, return a generic message
-                String eventName = type.replace("Event", "");
-                return "- " + eventName + " in " + repo;
+            } catch (NumberFormatException e) {
+                // Fall through
+            }
+            throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+        }
+
+        private static Instant requireInstant(String[] args, int index, String option) {
+            String value = requireValue(args, index, option);
+            try {
+                if (value.length() == 10) {
+                    return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+                }
+                return Instant.parse(value);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
         }
-        
-        return null;
     }
     
     /**
-     * Capitalize the first letter of a string
-     * @param str Input string
-     * @return Capitalized string
+     * Fetch recent activity for a GitHub user
+     * @param username GitHub username
+     * @return JSON response as string
+     * @throws Exception if request fails
      */
-    private String capitalize(String str) {
-        if (str == null || str.isEmpty()) {
-            return str;
+    public String fetchUserActivity(String username, String token) throws Exception {
+        ApiResponse response = send(eventsUri(username, DEFAULT_QUERY), token, Collections.emptyMap());
+        checkStatus(response, username);
+        try {
+            return response.getBody();
+        } finally {
+            response.release();
         }
-        return str.substring(0, 1).toUpperCase() + str.substring(1);
     }
-    
+
     /**
-     * Display the formatted activities in the terminal
+     * Fetch and parse recent events for a GitHub user. Concurrent lookups of
+     * the same user, query and token share a single fetch-and-parse.
      * @param username GitHub username
-     * @param activities List of formatted activity strings
+     * @param token Optional access token
+     * @param query Limit and time boundary of the lookup
+     * @return Parsed events, newest first
+     * @throws Exception if request fails
      */
-    public void displayActivity(String username, List<String> activities) {
-        if (activities.isEmpty()) {
-            System.out.println("No recent activity found for user '" + username + "'");
-            return;
-        }
-        
-        System.out.println("Recent activity for " + username + ":");
-        System.out.println();
-        
-        // Limit to most recent 20 activities
-        int count = Math.min(activities.size(), 20);
-        for (int i = 0; i < count; i++) {
-            System.out.println(activities.get(i));
-        }
+    private List<GitHubEvent> fetchEvents(String username, String token, EventQuery query) throws Exception {
+        String key = username.toLowerCase() + "|" + query.key() + "|" + credentialIdentity(token);
+        return inFlightLookups.execute(key, () -> loadEvents(username, token, query));
     }
-    
+
     /**
-     * Inner class to represent a GitHub event
+     * Fetch and parse recent events for a GitHub user without coalescing.
+     * When the query asks for a limit or a time boundary, pages of up to 100
+     * events are followed through their {@code Link: rel="next"} header; the
+     * next page is requested while the current one is being parsed, and
+     * fetching stops as soon as the query is satisfied.
+     * @param username GitHub username
+     * @param token Optional access token
+     * @param query Limit and time boundary of the lookup
+     * @return Parsed events, newest first
+     * @throws Exception if request fails
      */
-    private static class GitHubEvent {
-        private String type;
-        private String repoName;
-        private String action;
-        private String refType;
-        private String ref;
-        private int commitCount;
+    private List<GitHubEvent> loadEvents(String username, String token, EventQuery query) throws Exception {
+        if (diskCache == null) {
+            return streamEvents(username, token, query, null);
+        }
+
+        PageResult page = requestPage(eventsUri(username, query), username, token);
+        if (!query.isPaged()) {
+            return page.getEvents();
+        }
+
+        List<GitHubEvent> events = new ArrayList<>();
+        Future<PageResult> pending = null;
+        try {
+            while (true) {
+                URI next = page.getNextUri();
+                if (next != null && events.size() + query.pageSize() < query.getLimit()) {
+                    pending = BACKGROUND_EXECUTOR.submit(() -> requestPage(next, username, token));
+                }
+
+                for (GitHubEvent event : page.getEvents()) {
+                    if (query.isBeforeSince(event)) {
+                        return Collections.unmodifiableList(events);
+                    }
+                    events.add(event);
+                    if (events.size() >= query.getLimit()) {
+                        return Collections.unmodifiableList(events);
+                    }
+                }
+
+                if (pending == null) {
+                    return Collections.unmodifiableList(events);
+                }
+                page = awaitPage(pending);
+                pending = null;
+            }
+        } finally {
+            if (pending != null) {
+                pending.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Fetch events while the response bodies are still arriving, and stop
+     * reading as soon as the query is satisfied: once enough displayable
+     * events have been parsed, or an event older than the time boundary is
+     * seen, the rest of the body is never read and the connection is closed.
+     * Partially read pages are not cached; with a disk cache configured the
+     * buffered path in {@link #loadEvents} is used instead.
+     * <p>
+     * Each event is parsed as soon as its closing brace arrives, so a
+     * listener sees the first event about one round trip after the request
+     * rather than after the whole page has downloaded.
+     * @param username GitHub username
+     * @param token Optional access token
+     * @param query Limit, display limit and time boundary of the lookup
+     * @param listener Called with the rendered activity of each displayable
+     *                 event as it is parsed, or null
+     * @return Parsed events, newest first
+     * @throws Exception if request fails
+     */
+    private List<GitHubEvent> streamEvents(String username, String token, EventQuery query,
+                                           Consumer<String> listener) throws Exception {
+        List<GitHubEvent> events = new ArrayList<>();
+        int displayable = 0;
+        URI uri = eventsUri(username, query);
+        Future<ApiResponse> pending = null;
+
+        try {
+            while (uri != null) {
+                ApiResponse response = pending != null ? awaitPage(pending) : send(uri, token, Collections.emptyMap(), true);
+                pending = null;
+                checkStatus(response, username);
+
+                URI next = query.isPaged() ? parseNextLink(response.getHeader("Link")) : null;
+                if (next != null && events.size() + query.pageSize() < query.getLimit()) {
+                    pending = BACKGROUND_EXECUTOR.submit(() -> send(next, token, Collections.emptyMap(), true));
+                }
+
+                EventStreamSplitter splitter = new EventStreamSplitter(response.openStream());
+                try {
+                    byte[] eventJson;
+                    while ((eventJson = splitter.next()) != null) {
+                        GitHubEvent event = parseEvent(eventJson);
+                        if (event == null) {
+                            continue;
+                        }
+                        if (query.isBeforeSince(event)) {
+                            return Collections.unmodifiableList(events);
+                        }
+                        events.add(event);
+                        String activity = formatEvent(event);
+                        if (activity != null) {
+                            displayable++;
+                            if (listener != null) {
+                                listener.accept(activity);
+                            }
+                        }
+                        if (displayable >= query.displayLimit() || events.size() >= query.getLimit()) {
+                            return Collections.unmodifiableList(events);
+                        }
+                    }
+                } finally {
+                    splitter.release();
+                    response.release();
+                }
+                uri = next;
+            }
+            return Collections.unmodifiableList(events);
+        } finally {
+            if (pending != null) {
+                pending.cancel(true);
+                // The prefetched page is not needed: free its connection, and ignore it if it failed
+                if (pending.state() == Future.State.SUCCESS) {
+                    pending.resultNow().release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits a JSON array of events into its top-level objects as the bytes
+     * arrive, so the caller can stop reading at any event boundary. Only
+     * string, escape and nesting state is tracked; the objects themselves are
+     * handed out as bytes for {@link #parseEvent}.
+     */
+    private static class EventStreamSplitter {
+        private final InputStream in;
+        private byte[] buffer = BUFFER_POOL.acquire();
+        private int position;
+        private int end;
+        private int objectStart = -1;
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+
+        EventStreamSplitter(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @return UTF-8 JSON of the next event, or null at the end of the array
+         * @throws IOException if reading fails
+         */
+        byte[] next() throws IOException {
+            while (true) {
+                while (position < end) {
+                    byte b = buffer[position++];
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                        continue;
+                    }
+                    switch (b) {
+                        case '"':
+                            inString = true;
+                            break;
+                        case '{':
+                        case '[':
+                            if (depth == 1 && b == '{') {
+                                objectStart = position - 1;
+                            }
+                            depth++;
+                            break;
+                        case '}':
+                        case ']':
+                            depth--;
+                            if (depth == 1 && objectStart >= 0) {
+                                byte[] json = Arrays.copyOfRange(buffer, objectStart, position);
+                                objectStart = -1;
+                                return json;
+                            } else if (depth == 0) {
+                                return null;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                if (!fill()) {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Read more bytes, keeping the object under construction
+         * @return false at the end of the stream
+         */
+        private boolean fill() throws IOException {
+            int keep = objectStart >= 0 ? objectStart : position;
+            if (keep > 0) {
+                System.arraycopy(buffer, keep, buffer, 0, end - keep);
+                end -= keep;
+                position -= keep;
+                if (objectStart >= 0) {
+                    objectStart -= keep;
+                }
+            }
+            if (end == buffer.length) {
+                byte[] larger = Arrays.copyOf(buffer, buffer.length * 2);
+                BUFFER_POOL.release(buffer);
+                buffer = larger;
+            }
+            int read = in.read(buffer, end, buffer.length - end);
+            if (read == -1) {
+                return false;
+            }
+            end += read;
+            return true;
+        }
+
+        void release() {
+            if (buffer != null) {
+                BUFFER_POOL.release(buffer);
+                buffer = null;
+            }
+        }
+    }
+
+    /**
+     * Request one page of events, revalidating an earlier response with
+     * If-None-Match / If-Modified-Since. A 304 answer does not count against
+     * the rate limit and returns the cached events without parsing the body
+     * again.
+     * @param uri Page URI
+     * @param username GitHub username the page belongs to
+     * @param token Optional access token
+     * @return The page, parsed on first access
+     * @throws Exception if request fails
+     */
+    private PageResult requestPage(URI uri, String username, String token) throws Exception {
+        String cacheKey = uri + "|" + credentialIdentity(token);
+
+        // A fresh response on disk answers without touching the network
+        DiskCache.Entry stored = diskCache != null ? diskCache.get(cacheKey) : null;
+        if (stored != null && stored.isFresh()) {
+            return new PageResult(cacheKey, stored.getResponse());
+        }
+
+        ConditionalCache.Entry cached = conditionalCache.get(cacheKey);
+        String etag = cached != null ? cached.getEtag() : stored != null ? stored.getResponse().getHeader("ETag") : null;
+        String lastModified = cached != null ? cached.getLastModified()
+                : stored != null ? stored.getResponse().getHeader("Last-Modified") : null;
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+
+        ApiResponse response = send(uri, token, headers);
+        if (response.getStatusCode() == 304 && (cached != null || stored != null)) {
+            response.release();
+            conditionalCache.recordHit();
+            if (stored != null) {
+                diskCache.renew(cacheKey, stored, response);
+            }
+            if (cached != null) {
+                if (stored != null) {
+                    stored.getResponse().release();
+                }
+                return new PageResult(cached, response);
+            }
+            return new PageResult(cacheKey, stored.getResponse());
+        }
+        if (stored != null) {
+            stored.getResponse().release();
+        }
+        checkStatus(response, username);
+        conditionalCache.recordMiss();
+        if (diskCache != null) {
+            diskCache.put(cacheKey, response);
+        }
+        return new PageResult(cacheKey, response);
+    }
+
+    /**
+     * Wait for a prefetched page
+     * @param pending Prefetch task
+     * @return Result of the task
+     * @throws Exception the exception the task failed with
+     */
+    private static <T> T awaitPage(Future<T> pending) throws Exception {
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Build the events URI for a user
+     * @param username GitHub username
+     * @param query Query whose page size is requested, if paged
+     * @return Request URI
+     * @throws Exception if the resulting URL is invalid
+     */
+    private URI eventsUri(String username, EventQuery query) throws Exception {
+        String urlString = apiUrl + String.format(EVENTS_PATH, username);
+        if (query.isPaged()) {
+            urlString += "?per_page=" + query.pageSize();
+        }
+        try {
+            return new URI(urlString);
+        } catch (URISyntaxException e) {
+            throw new Exception("Invalid URL: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Extract the rel="next" target of a Link header
+     * @param linkHeader Link header value, may be null
+     * @return Next page URI, or null on the last page
+     */
+    private static URI parseNextLink(String linkHeader) {
+        if (linkHeader == null) {
+            return null;
+        }
+        Matcher matcher = NEXT_LINK_PATTERN.matcher(linkHeader);
+        if (matcher.find()) {
+            try {
+                return new URI(matcher.group(1));
+            } catch (URISyntaxException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One page of events, either freshly downloaded or revalidated from the
+     * conditional cache. The body is parsed the first time the events are read.
+     */
+    private class PageResult {
+        private final String cacheKey;
+        private final ApiResponse response;
+        private final URI nextUri;
+        private final boolean notModified;
+        private List<GitHubEvent> events;
+
+        PageResult(String cacheKey, ApiResponse response) {
+            this.cacheKey = cacheKey;
+            this.response = response;
+            this.nextUri = parseNextLink(response.getHeader("Link"));
+            this.notModified = false;
+        }
+
+        PageResult(ConditionalCache.Entry cached, ApiResponse notModifiedResponse) {
+            this.cacheKey = null;
+            this.response = notModifiedResponse;
+            this.nextUri = cached.getNextUri();
+            this.notModified = true;
+            this.events = cached.getEvents();
+        }
+
+        public URI getNextUri() { return nextUri; }
+
+        /**
+         * @return true if the server answered 304 and the events come from the cache
+         */
+        public boolean isNotModified() { return notModified; }
+
+        /**
+         * @return Seconds the server asks clients to wait between polls, or 0 if not given
+         */
+        public int getPollInterval() {
+            String value = response.getHeader("X-Poll-Interval");
+            try {
+                return value == null ? 0 : Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        public List<GitHubEvent> getEvents() {
+            if (events == null) {
+                try {
+                    List<GitHubEvent> parsed = parseEvents(response.copyBody());
+                    // Cached pages outlive the lookup; keep their events small
+                    for (GitHubEvent event : parsed) {
+                        event.compact(showCommits);
+                    }
+                    events = Collections.unmodifiableList(parsed);
+                } finally {
+                    response.release();
+                }
+                conditionalCache.put(cacheKey, response.getHeader("ETag"),
+                        response.getHeader("Last-Modified"), nextUri, events);
+            }
+            return events;
+        }
+    }
+
+    /**
+     * How many events to look up and how far back to go
+     */
+    private static class EventQuery {
+        private final int limit;
+        private final Instant since;
+
+        /**
+         * @param limit Maximum number of events, or 0 for no limit
+         * @param since Oldest event timestamp to include, or null
+         */
+        EventQuery(int limit, Instant since) {
+            this.limit = limit;
+            this.since = since;
+        }
+
+        /**
+         * @return true if pages should be followed, false to fetch only the default first page
+         */
+        public boolean isPaged() { return limit > 0 || since != null; }
+
+        public int getLimit() { return limit > 0 ? limit : Integer.MAX_VALUE; }
+
+        public int pageSize() { return Math.min(getLimit(), MAX_PAGE_SIZE); }
+
+        /**
+         * @return Key identifying the query for request coalescing
+         */
+        public String key() { return limit + "|" + since; }
+
+        /**
+         * @return Number of activity lines to display
+         */
+        public int displayLimit() { return limit > 0 ? limit : MAX_DISPLAYED; }
+
+        /**
+         * @return Time boundary in epoch milliseconds, or {@link EventBatch#NO_TIME} for none
+         */
+        public long sinceMillis() { return since != null ? since.toEpochMilli() : EventBatch.NO_TIME; }
+
+        /**
+         * @param event Parsed event
+         * @return true if the event is older than the time boundary
+         */
+        public boolean isBeforeSince(GitHubEvent event) {
+            if (since == null || event.getCreatedAt() == null) {
+                return false;
+            }
+            try {
+                return Instant.parse(event.getCreatedAt()).isBefore(since);
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Send a GET request over the configured transport. Without an explicit
+     * token each attempt goes out with the pooled token that has the most
+     * rate limit headroom.
+     * @param uri Request URI
+     * @param token Explicit access token, or null to use the token pool
+     * @param headers Additional request headers
+     * @return Status, headers and body of the response
+     * @throws Exception if the request fails
+     */
+    private ApiResponse send(URI uri, String token, Map<String, String> headers) throws Exception {
+        return send(uri, token, headers, false);
+    }
+
+    /**
+     * Send a GET request, optionally leaving a successful body unread
+     * @param uri Request URI
+     * @param token Explicit access token, or null to use the token pool
+     * @param headers Additional request headers
+     * @param streamBody true to return a 200 response with its body still
+     *                   open on the connection (see {@link ApiResponse#openStream()})
+     * @return Status, headers and body of the response
+     * @throws Exception if the request fails
+     */
+    private ApiResponse send(URI uri, String token, Map<String, String> headers, boolean streamBody)
+            throws Exception {
+        long deadline = retryPolicy.deadlineFromNow();
+        int failures = 0;
+        for (int attempt = 1; ; attempt++) {
+            TokenPool.TokenState credential = token != null ? tokenPool.forToken(token) : tokenPool.select();
+            RateLimitScheduler scheduler = credential.getScheduler();
+
+            boolean admitted;
+            try {
+                admitted = scheduler.acquire();
+            } catch (InterruptedException e) {
+                credential.release();
+                throw e;
+            }
+            if (!admitted) {
+                // Paused by a rate limit for longer than --max-wait
+                credential.release();
+                throw new Exception("API rate limit exceeded. Please try again later");
+            }
+
+            ApiResponse response;
+            long started = System.nanoTime();
+            try {
+                response = exchange(uri, credential.getToken(), headers, deadline, streamBody);
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted() || !retryPolicy.backoff(++failures, deadline)) {
+                    throw new Exception("Network error: "
+                            + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+                }
+                continue;
+            } finally {
+                credential.release();
+                stats.recordRequest(System.nanoTime() - started);
+            }
+
+            // Server errors are transient: retry the (idempotent) GET
+            if (RetryPolicy.isRetryable(response.getStatusCode()) && retryPolicy.backoff(++failures, deadline)) {
+                response.release();
+                continue;
+            }
+
+            // A rejected token leaves the rotation; try the next one
+            if (response.getStatusCode() == 401 && token == null && tokenPool.reject(credential)) {
+                response.release();
+                continue;
+            }
+
+            // Queue the request again behind the rate limit instead of failing
+            if (!scheduler.update(response) || attempt >= MAX_RATE_LIMIT_RETRIES) {
+                return response;
+            }
+            long available = token != null ? scheduler.availableAtMillis() : tokenPool.nextAvailableMillis();
+            if (available - System.currentTimeMillis() > tokenPool.getMaxWaitMillis()) {
+                return response;
+            }
+            response.release();
+        }
+    }
+
+    /**
+     * Perform one request within the deadline. With hedging enabled a second
+     * identical request is sent if the first has not answered within the
+     * recent p95 latency, and whichever answers first wins.
+     * @param uri Request URI
+     * @param token Access token, may be null
+     * @param headers Additional request headers
+     * @param deadline Time (epoch millis) by which the response must arrive
+     * @param streamBody true to leave a successful body open for streaming
+     * @return Status, headers and body of the response
+     * @throws IOException if the request fails or the deadline passes
+     */
+    private ApiResponse exchange(URI uri, String token, Map<String, String> headers, long deadline,
+                                 boolean streamBody) throws IOException {
+        if (!retryPolicy.isHedging()) {
+            return transport(uri, token, headers, deadline, streamBody);
+        }
+
+        CompletableFuture<ApiResponse> winner = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        Future<?> primary = startAttempt(winner, running, uri, token, headers, deadline, streamBody);
+        Future<?> hedge = null;
+        try {
+            long hedgeAt = System.currentTimeMillis() + retryPolicy.hedgeDelayMillis();
+            ApiResponse response = awaitWinner(winner, Math.min(hedgeAt, deadline));
+            if (response != null) {
+                return response;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IOException("Request deadline exceeded");
+            }
+
+            running.incrementAndGet();
+            retryPolicy.recordHedge();
+            hedge = startAttempt(winner, running, uri, token, headers, deadline, streamBody);
+            response = awaitWinner(winner, deadline);
+            if (response == null) {
+                throw new IOException("Request deadline exceeded");
+            }
+            return response;
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private Future<?> startAttempt(CompletableFuture<ApiResponse> winner, AtomicInteger running, URI uri,
+                                   String token, Map<String, String> headers, long deadline, boolean streamBody) {
+        return BACKGROUND_EXECUTOR.submit(() -> {
+            try {
+                ApiResponse response = transport(uri, token, headers, deadline, streamBody);
+                if (!winner.complete(response)) {
+                    response.release();
+                }
+            } catch (IOException e) {
+                if (running.decrementAndGet() == 0) {
+                    winner.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The winning response, or null if none arrived by the given time
+     */
+    private static ApiResponse awaitWinner(CompletableFuture<ApiResponse> winner, long until) throws IOException {
+        try {
+            return winner.get(Math.max(0, until - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted");
+        }
+    }
+
+    /**
+     * Send one request over the configured transport, bounded by the connect
+     * and read timeouts and by the deadline, whichever is shorter
+     */
+    private ApiResponse transport(URI uri, String token, Map<String, String> headers, long deadline,
+                                  boolean streamBody) throws IOException {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new IOException("Request deadline exceeded");
+        }
+        int timeout = (int) Math.min(TIMEOUT, remaining);
+
+        long started = System.nanoTime();
+        RawResponse raw = transport.send(uri, token, headers, timeout);
+        ApiResponse response = new ApiResponse(raw.getStatusCode(), raw.getHeaders());
+        try {
+            // 304 and 204 have no body, whatever Content-Encoding they repeat
+            int status = raw.getStatusCode();
+            InputStream body = status == 304 || status == 204
+                    ? raw.getBody()
+                    : decodeBody(raw.getBody(), raw.getHeader("Content-Encoding"));
+            if (streamBody && raw.getStatusCode() == 200) {
+                response.attachStream(body, raw);
+                raw = null;
+            } else {
+                try (InputStream in = body) {
+                    response.readBody(in);
+                }
+            }
+        } finally {
+            if (raw != null) {
+                raw.close();
+            }
+        }
+        retryPolicy.recordLatency((System.nanoTime() - started) / 1000000);
+        return response;
+    }
+
+    /**
+     * Turn error responses into exceptions
+     * @param response Response to check
+     * @param username GitHub username the request was made for
+     * @throws Exception if the response is not a 200
+     */
+    private void checkStatus(ApiResponse response, String username) throws Exception {
+        int responseCode = response.getStatusCode();
+        if (responseCode != 200) {
+            response.release();
+        }
+        if (responseCode == 404) {
+            throw new Exception("User '" + username + "' not found");
+        } else if (responseCode == 401) {
+            throw new Exception("Bad credentials: the access token was rejected");
+        } else if (responseCode == 403 || responseCode == 429) {
+            throw new Exception("API rate limit exceeded. Please try again later");
+        } else if (responseCode != 200) {
+            throw new Exception("GitHub API error: HTTP " + responseCode);
+        }
+    }
+
+    /**
+     * Identify the credentials a request is made with
+     * @param token Explicit access token, or null to use the token pool
+     * @return Identity for cache keys
+     */
+    private String credentialIdentity(String token) {
+        return token != null ? tokenIdentity(token) : tokenPool.identity();
+    }
+
+    /**
+     * Identify a token without keeping it in cache keys
+     * @param token Access token, may be null
+     * @return Short hash of the token, or "anonymous"
+     */
+    private static String tokenIdentity(String token) {
+        if (token == null || token.isEmpty()) {
+            return "anonymous";
+        }
+        return sha256Hex(token, 8);
+    }
+
+    /**
+     * @param value Text to hash
+     * @param bytes Number of leading digest bytes to keep
+     * @return Hex encoded, truncated SHA-256 of the value
+     */
+    private static String sha256Hex(String value, int bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < bytes; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Sends GET requests to the API. Implementations return the body exactly
+     * as received (possibly compressed); decoding and reading are shared.
+     */
+    public interface Transport {
+        /**
+         * @param uri Request URI
+         * @param token Optional access token
+         * @param headers Additional request headers
+         * @param timeout Connect and read timeout in milliseconds
+         * @return Status, headers and raw body stream; the caller closes it
+         * @throws IOException if the request fails
+         */
+        RawResponse send(URI uri, String token, Map<String, String> headers, int timeout) throws IOException;
+    }
+
+    /**
+     * Response as returned by a transport, before decoding
+     */
+    public static class RawResponse implements Closeable {
+        private final int statusCode;
+        private final Map<String, List<String>> headers;
+        private final InputStream body;
+        private final Closeable resource;
+
+        RawResponse(int statusCode, Map<String, List<String>> headers, InputStream body, Closeable resource) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body != null ? body : InputStream.nullInputStream();
+            this.resource = resource;
+        }
+
+        public int getStatusCode() { return statusCode; }
+        public Map<String, List<String>> getHeaders() { return headers; }
+        public InputStream getBody() { return body; }
+
+        /**
+         * @param name Header name (case insensitive)
+         * @return First value of the header, or null if absent
+         */
+        public String getHeader(String name) {
+            List<String> values = headers.get(name.toLowerCase());
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                body.close();
+            } finally {
+                if (resource != null) {
+                    resource.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends requests over the shared HTTP/2 client. Connections and TLS
+     * sessions are kept alive between calls, so only the first request to the
+     * API pays for the handshake.
+     */
+    private static class HttpClientTransport implements Transport {
+        @Override
+        public RawResponse send(URI uri, String token, Map<String, String> headers, int timeout) throws IOException {
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                    .GET()
+                    .timeout(Duration.ofMillis(timeout))
+                    .header("User-Agent", USER_AGENT)
+                    .header("Accept", "application/vnd.github.v3+json")
+                    .header("Accept-Encoding", ACCEPT_ENCODING);
+            if (token != null && !token.isEmpty()) {
+                request.header("Authorization", "Bearer " + token);
+            }
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                request.header(header.getKey(), header.getValue());
+            }
+
+            try {
+                HttpResponse<InputStream> response = SharedHttpClient.INSTANCE.send(
+                        request.build(), HttpResponse.BodyHandlers.ofInputStream());
+                return new RawResponse(response.statusCode(), response.headers().map(), response.body(), null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Request interrupted");
+            }
+        }
+
+        @Override
+        public String toString() { return "HttpClient (HTTP/2)"; }
+    }
+
+    /**
+     * Sends each request over a new HttpURLConnection (legacy transport)
+     */
+    private static class UrlConnectionTransport implements Transport {
+        @Override
+        public RawResponse send(URI uri, String token, Map<String, String> headers, int timeout) throws IOException {
+            URL url = uri.toURL();
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+            try {
+                connection.setRequestMethod("GET");
+                connection.setRequestProperty("User-Agent", USER_AGENT);
+                connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
+                connection.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+                if (token != null && !token.isEmpty()) {
+                    connection.setRequestProperty("Authorization", "Bearer " + token);
+                }
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+                connection.setConnectTimeout(timeout);
+                connection.setReadTimeout(timeout);
+
+                int responseCode = connection.getResponseCode();
+                Map<String, List<String>> responseHeaders = new LinkedHashMap<>();
+                for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+                    if (header.getKey() != null) {
+                        responseHeaders.put(header.getKey().toLowerCase(), header.getValue());
+                    }
+                }
+                InputStream body = responseCode < 400 ? connection.getInputStream() : connection.getErrorStream();
+                return new RawResponse(responseCode, responseHeaders, body, connection::disconnect);
+            } catch (IOException e) {
+                connection.disconnect();
+                throw e;
+            }
+        }
+
+        @Override
+        public String toString() { return "HttpURLConnection"; }
+    }
+
+    /**
+     * Passes requests to another transport and saves every response (status,
+     * headers and raw body) to a directory, for later use with {@link ReplayTransport}
+     */
+    private static class RecordingTransport implements Transport {
+        private final Transport delegate;
+        private final Path directory;
+
+        RecordingTransport(Transport delegate, Path directory) throws IOException {
+            this.delegate = delegate;
+            this.directory = Files.createDirectories(directory);
+        }
+
+        @Override
+        public RawResponse send(URI uri, String token, Map<String, String> headers, int timeout) throws IOException {
+            byte[] body;
+            RawResponse response = delegate.send(uri, token, headers, timeout);
+            try {
+                body = response.getBody().readAllBytes();
+            } finally {
+                response.close();
+            }
+
+            StringBuilder head = new StringBuilder();
+            head.append("GET ").append(uri).append('\n');
+            head.append("HTTP ").append(response.getStatusCode()).append('\n');
+            for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+                for (String value : header.getValue()) {
+                    head.append(header.getKey().toLowerCase()).append(": ").append(value).append('\n');
+                }
+            }
+            head.append('\n');
+
+            Path target = directory.resolve(recordingName(uri, headers));
+            Path temp = Files.createTempFile(directory, "recording", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+                out.write(body);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            return new RawResponse(response.getStatusCode(), response.getHeaders(), new ByteArrayInputStream(body), null);
+        }
+
+        @Override
+        public String toString() { return delegate + ", recording to " + directory; }
+    }
+
+    /**
+     * Serves responses saved by {@link RecordingTransport} without touching
+     * the network, optionally adding latency and limiting bandwidth so runs
+     * are repeatable
+     */
+    private static class ReplayTransport implements Transport {
+        private final Path directory;
+        private final int latencyMillis;
+        private final int bytesPerSecond;
+
+        /**
+         * @param directory Directory with recorded responses
+         * @param latencyMillis Simulated time to first byte
+         * @param bytesPerSecond Simulated bandwidth, or 0 for unlimited
+         */
+        ReplayTransport(Path directory, int latencyMillis, int bytesPerSecond) {
+            this.directory = directory;
+            this.latencyMillis = latencyMillis;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public RawResponse send(URI uri, String token, Map<String, String> headers, int timeout) throws IOException {
+            Path file = directory.resolve(recordingName(uri, headers));
+            if (!Files.exists(file)) {
+                throw new IOException("No recorded response for GET " + uri);
+            }
+            byte[] recording = Files.readAllBytes(file);
+
+            // Head: request line, status line, headers, blank line; the raw body follows
+            int bodyStart = 0;
+            int lineStart = 0;
+            int statusCode = 0;
+            Map<String, List<String>> responseHeaders = new LinkedHashMap<>();
+            for (int i = 0; i < recording.length; i++) {
+                if (recording[i] != '\n') {
+                    continue;
+                }
+                String line = new String(recording, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                lineStart = i + 1;
+                if (line.isEmpty()) {
+                    bodyStart = lineStart;
+                    break;
+                } else if (line.startsWith("HTTP ")) {
+                    statusCode = Integer.parseInt(line.substring(5).trim());
+                } else if (!line.startsWith("GET ")) {
+                    int colon = line.indexOf(':');
+                    responseHeaders.computeIfAbsent(line.substring(0, colon), key -> new ArrayList<>())
+                            .add(line.substring(colon + 1).trim());
+                }
+            }
+
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(Math.min(latencyMillis, timeout));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Request interrupted");
+                }
+            }
+            InputStream body = new ByteArrayInputStream(recording, bodyStart, recording.length - bodyStart);
+            if (bytesPerSecond > 0) {
+                body = new ThrottledInputStream(body, bytesPerSecond);
+            }
+            return new RawResponse(statusCode, responseHeaders, body, null);
+        }
+
+        @Override
+        public String toString() { return "replay of " + directory; }
+    }
+
+    /**
+     * File name of the recording for a request. Conditional request headers
+     * are part of the key so revalidations replay as recorded.
+     */
+    private static String recordingName(URI uri, Map<String, String> headers) {
+        String key = "GET " + uri + "\n" + headers.get("If-None-Match") + "\n" + headers.get("If-Modified-Since");
+        return sha256Hex(key, 16) + ".http";
+    }
+
+    /**
+     * Input stream that delivers bytes no faster than a given rate
+     */
+    private static class ThrottledInputStream extends FilterInputStream {
+        private final int bytesPerSecond;
+        private final long started = System.nanoTime();
+        private long delivered;
+
+        ThrottledInputStream(InputStream in, int bytesPerSecond) {
+            super(in);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, Math.min(len, Math.max(1, bytesPerSecond / 10)));
+            if (read > 0) {
+                delivered += read;
+                long due = delivered * 1000000000L / bytesPerSecond;
+                long sleepNanos = due - (System.nanoTime() - started);
+                if (sleepNanos > 0) {
+                    try {
+                        Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Read interrupted");
+                    }
+                }
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Wrap a raw response stream so it is decompressed while it is read,
+     * counting bytes on the wire and after decoding
+     * @param raw Response body as received
+     * @param contentEncoding Content-Encoding header, may be null
+     * @return Stream of the decoded body
+     * @throws IOException if the compressed stream header is invalid
+     */
+    private InputStream decodeBody(InputStream raw, String contentEncoding) throws IOException {
+        PushbackInputStream wire = new PushbackInputStream(new CountingInputStream(raw, stats.wireBytes), 2);
+        // An empty body, e.g. of an error response, has nothing to decompress
+        int first = wire.read();
+        if (first < 0) {
+            return wire;
+        }
+        wire.unread(first);
+
+        InputStream decoded;
+        if (contentEncoding == null || contentEncoding.equalsIgnoreCase("identity")) {
+            decoded = wire;
+        } else if (contentEncoding.equalsIgnoreCase("gzip") || contentEncoding.equalsIgnoreCase("x-gzip")) {
+            try {
+                decoded = new GZIPInputStream(wire, 8192);
+            } catch (IOException e) {
+                raw.close();
+                throw new IOException("Invalid gzip response body"
+                        + (e.getMessage() != null ? ": " + e.getMessage() : ""), e);
+            }
+        } else if (contentEncoding.equalsIgnoreCase("deflate")) {
+            // Servers send either zlib-wrapped or raw deflate data under this name
+            byte[] header = new byte[2];
+            int read = wire.readNBytes(header, 0, 2);
+            wire.unread(header, 0, read);
+            boolean zlib = read == 2 && (header[0] & 0x0F) == 8
+                    && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+            decoded = new InflaterInputStream(wire, new Inflater(!zlib), 8192);
+        } else {
+            raw.close();
+            throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+        }
+        return new CountingInputStream(decoded, stats.decodedBytes);
+    }
+
+    /**
+     * Input stream that adds the number of bytes read to a shared counter
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                counter.addAndGet(read);
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Lazily created HTTP client shared by every request in the process
+     */
+    private static class SharedHttpClient {
+        static final HttpClient INSTANCE = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(TIMEOUT))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Transport independent view of an HTTP response
+     */
+    private static class ApiResponse {
+        private final int statusCode;
+        private final Map<String, List<String>> headers;
+        private byte[] body;
+        private int length;
+        private InputStream stream;
+        private Closeable connection;
+
+        ApiResponse(int statusCode, Map<String, List<String>> headers) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+        }
+
+        public int getStatusCode() { return statusCode; }
+
+        /**
+         * Read the decoded body once into a pooled buffer
+         * @param in Decoded body stream
+         * @throws IOException if reading fails
+         */
+        void readBody(InputStream in) throws IOException {
+            byte[] buffer = BUFFER_POOL.acquire();
+            int size = 0;
+            int read;
+            while ((read = in.read(buffer, size, buffer.length - size)) != -1) {
+                size += read;
+                if (size == buffer.length) {
+                    byte[] larger = Arrays.copyOf(buffer, buffer.length * 2);
+                    BUFFER_POOL.release(buffer);
+                    buffer = larger;
+                }
+            }
+            this.body = buffer;
+            this.length = size;
+        }
+
+        /**
+         * @return Copy of the decoded body sized exactly to its length, which
+         *         unlike the pooled buffer may outlive {@link #release()}
+         */
+        byte[] copyBody() {
+            if (stream != null) {
+                getBody();
+            }
+            return body == null ? new byte[0] : Arrays.copyOf(body, length);
+        }
+
+        /**
+         * Keep the decoded body open on the connection instead of reading it
+         * @param in Decoded body stream
+         * @param connection Raw response to close once the body is done with
+         */
+        void attachStream(InputStream in, Closeable connection) {
+            this.stream = in;
+            this.connection = connection;
+        }
+
+        /**
+         * @return Stream of the decoded body; the caller reads as much as it
+         *         needs and then calls {@link #release()}
+         */
+        InputStream openStream() {
+            if (stream != null) {
+                return stream;
+            }
+            return body == null ? InputStream.nullInputStream() : new ByteArrayInputStream(body, 0, length);
+        }
+
+        /**
+         * @return Body decoded as UTF-8, or an empty string if there is none
+         */
+        public String getBody() {
+            if (stream != null) {
+                try {
+                    readBody(stream);
+                } catch (IOException e) {
+                    // Keep whatever arrived
+                } finally {
+                    closeStream();
+                }
+            }
+            return body == null ? "" : new String(body, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void closeStream() {
+            try {
+                stream.close();
+                connection.close();
+            } catch (IOException e) {
+                // Ignore
+            } finally {
+                stream = null;
+                connection = null;
+            }
+        }
+
+        /**
+         * Write the body bytes as received
+         * @param out Destination
+         * @throws IOException if writing fails
+         */
+        void writeBody(OutputStream out) throws IOException {
+            if (body != null) {
+                out.write(body, 0, length);
+            }
+        }
+
+        /**
+         * Return the body buffer to the pool. The body is empty afterwards.
+         */
+        void release() {
+            if (stream != null) {
+                closeStream();
+            }
+            if (body != null) {
+                BUFFER_POOL.release(body);
+                body = null;
+                length = 0;
+            }
+        }
+
+        /**
+         * @param name Header name (case insensitive)
+         * @return First value of the header, or null if absent
+         */
+        public String getHeader(String name) {
+            List<String> values = headers.get(name.toLowerCase());
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+    }
+
+    /**
+     * Coalesces concurrent calls with the same key: the first caller runs the
+     * work and every caller that arrives while it is in flight receives the
+     * same result (or exception)
+     * @param <V> Result type
+     */
+    private static class SingleFlight<V> {
+        private final Map<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong shared = new AtomicLong();
+
+        V execute(String key, Callable<V> work) throws Exception {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+            if (existing != null) {
+                shared.incrementAndGet();
+                try {
+                    return existing.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+
+            executed.incrementAndGet();
+            try {
+                V result = work.call();
+                future.complete(result);
+                return result;
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, future);
+            }
+        }
+
+        void print() {
+            System.out.printf("Lookups: %d executed, %d coalesced with an in-flight duplicate%n",
+                    executed.get(), shared.get());
+        }
+    }
+
+    /**
+     * Reusable byte buffers for response bodies, so steady-state lookups read
+     * into memory that is already allocated
+     */
+    private static class BufferPool {
+        private static final int BUFFER_SIZE = 64 * 1024;
+        private static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+        private static final int MAX_POOLED = 64;
+
+        private final ConcurrentLinkedDeque<byte[]> buffers = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger pooled = new AtomicInteger();
+
+        byte[] acquire() {
+            byte[] buffer = buffers.pollFirst();
+            if (buffer == null) {
+                return new byte[BUFFER_SIZE];
+            }
+            pooled.decrementAndGet();
+            return buffer;
+        }
+
+        void release(byte[] buffer) {
+            if (buffer.length > MAX_BUFFER_SIZE) {
+                return;
+            }
+            if (pooled.incrementAndGet() > MAX_POOLED) {
+                pooled.decrementAndGet();
+                return;
+            }
+            // Grown buffers go first so large bodies don't have to grow again
+            if (buffer.length > BUFFER_SIZE) {
+                buffers.offerFirst(buffer);
+            } else {
+                buffers.offerLast(buffer);
+            }
+        }
+    }
+
+    /**
+     * In-memory store of validators and parsed events per request URL and
+     * token, used to send conditional requests
+     */
+    private static class ConditionalCache {
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        Entry get(String key) {
+            return entries.get(key);
+        }
+
+        void put(String key, String etag, String lastModified, URI nextUri, List<GitHubEvent> events) {
+            if (etag != null || lastModified != null) {
+                entries.put(key, new Entry(etag, lastModified, nextUri, events));
+            }
+        }
+
+        void recordHit() { hits.incrementAndGet(); }
+        void recordMiss() { misses.incrementAndGet(); }
+
+        void print() {
+            long hitCount = hits.get();
+            long total = hitCount + misses.get();
+            System.out.printf("Conditional cache: %d hits, %d misses (%.1f%% hit rate)%n",
+                    hitCount, total - hitCount, total == 0 ? 0.0 : hitCount * 100.0 / total);
+        }
+
+        /**
+         * Validators and parsed events of one response
+         */
+        static class Entry {
+            private final String etag;
+            private final String lastModified;
+            private final URI nextUri;
+            private final List<GitHubEvent> events;
+
+            Entry(String etag, String lastModified, URI nextUri, List<GitHubEvent> events) {
+                this.etag = etag;
+                this.lastModified = lastModified;
+                this.nextUri = nextUri;
+                this.events = events;
+            }
+
+            public String getEtag() { return etag; }
+            public String getLastModified() { return lastModified; }
+            public URI getNextUri() { return nextUri; }
+            public List<GitHubEvent> getEvents() { return events; }
+        }
+    }
+
+    /**
+     * Paces requests of one token from the X-RateLimit-* headers of every response. While
+     * plenty of budget is left requests go out unthrottled; once it runs low
+     * the remaining requests are spread evenly until the window resets, and
+     * rate limited responses (Retry-After, exhausted budget or a secondary
+     * rate limit) pause every caller instead of failing.
+     */
+    private static class RateLimitScheduler {
+        private static final double PACING_THRESHOLD = 0.1; // pace below 10% of the budget
+        private static final long SECONDARY_LIMIT_PAUSE = 60000; // GitHub asks for at least a minute
+
+        private long maxWaitMillis = DEFAULT_MAX_RATE_LIMIT_WAIT * 1000L;
+        private int limit = -1;
+        private int remaining = -1;
+        private long resetAtMillis;
+        private long pausedUntilMillis;
+        private long nextSlotMillis;
+        private final AtomicLong throttled = new AtomicLong();
+        private final AtomicLong waitedMillis = new AtomicLong();
+
+        void setMaxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        /**
+         * Block until the caller may send its next request
+         * @return false without waiting if the token is paused for longer
+         *         than the maximum wait, e.g. until a reset an hour away
+         * @throws InterruptedException if interrupted while waiting
+         */
+        boolean acquire() throws InterruptedException {
+            long delay = reserveSlot();
+            if (delay < 0) {
+                return false;
+            }
+            if (delay > 0) {
+                waitedMillis.addAndGet(delay);
+                Thread.sleep(delay);
+            }
+            return true;
+        }
+
+        /**
+         * @return Time to wait before sending, or -1 if it exceeds the maximum wait
+         */
+        private synchronized long reserveSlot() {
+            long now = System.currentTimeMillis();
+            if (pausedUntilMillis - now > maxWaitMillis) {
+                return -1;
+            }
+            long start = Math.max(now, pausedUntilMillis);
+
+            if (remaining >= 0 && limit > 0 && remaining < limit * PACING_THRESHOLD && resetAtMillis > start) {
+                if (remaining == 0) {
+                    // Too long to wait: let the request fail with the usual error
+                    if (resetAtMillis - now <= maxWaitMillis) {
+                        start = resetAtMillis;
+                    }
+                } else {
+                    long spacing = (resetAtMillis - start) / remaining;
+                    start = Math.max(start, nextSlotMillis);
+                    nextSlotMillis = start + spacing;
+                    remaining--;
+                }
+            }
+            return start - now;
+        }
+
+        /**
+         * @return Time at which this token may send again
+         */
+        synchronized long availableAtMillis() {
+            long now = System.currentTimeMillis();
+            long availableAt = Math.max(now, pausedUntilMillis);
+            if (remaining == 0 && resetAtMillis > now) {
+                availableAt = Math.max(availableAt, resetAtMillis);
+            }
+            return availableAt;
+        }
+
+        /**
+         * @return Requests left in the current window, or Integer.MAX_VALUE while unknown
+         */
+        synchronized int headroom() {
+            return remaining < 0 ? Integer.MAX_VALUE : remaining;
+        }
+
+        /**
+         * Record the rate limit headers of a response
+         * @param response Response just received
+         * @return true if the request was rejected by a rate limit and should
+         *         be sent again after the pause
+         */
+        synchronized boolean update(ApiResponse response) {
+            long now = System.currentTimeMillis();
+            Integer limitHeader = intHeader(response, "X-RateLimit-Limit");
+            Integer remainingHeader = intHeader(response, "X-RateLimit-Remaining");
+            Integer resetHeader = intHeader(response, "X-RateLimit-Reset");
+            if (limitHeader != null) {
+                limit = limitHeader;
+            }
+            if (remainingHeader != null) {
+                remaining = remainingHeader;
+            }
+            if (resetHeader != null) {
+                resetAtMillis = resetHeader * 1000L;
+            }
+
+            int status = response.getStatusCode();
+            if (status != 403 && status != 429) {
+                return false;
+            }
+
+            long pause;
+            Integer retryAfter = intHeader(response, "Retry-After");
+            if (retryAfter != null) {
+                pause = retryAfter * 1000L;
+            } else if (remaining == 0 && resetAtMillis > now) {
+                pause = resetAtMillis - now;
+            } else if (status == 429 || response.getBody().contains("secondary rate limit")) {
+                pause = SECONDARY_LIMIT_PAUSE;
+            } else {
+                return false; // Forbidden for another reason
+            }
+
+            throttled.incrementAndGet();
+            pausedUntilMillis = Math.max(pausedUntilMillis, now + pause);
+            return true;
+        }
+
+        private static Integer intHeader(ApiResponse response, String name) {
+            String value = response.getHeader(name);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Integer.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        synchronized void print(String label) {
+            System.out.printf("Rate limit (%s): %s remaining, %d throttled responses, %.1f s spent waiting%n", label,
+                    remaining >= 0 ? remaining + "/" + limit : "unknown", throttled.get(), waitedMillis.get() / 1000.0);
+        }
+    }
+
+    /**
+     * Retry, hedging and deadline settings for requests. Failed GETs are
+     * retried with full-jitter exponential backoff; hedge delays follow the
+     * p95 of recently observed latencies.
+     */
+    private static class RetryPolicy {
+        private static final long BASE_BACKOFF = 200;
+        private static final long MAX_BACKOFF = 5000;
+        private static final long DEFAULT_HEDGE_DELAY = 1000;
+        private static final int MIN_LATENCY_SAMPLES = 20;
+
+        private int maxRetries = DEFAULT_RETRIES;
+        private boolean hedging;
+        private long deadlineMillis;
+        private final long[] latencies = new long[256];
+        private int latencyCount;
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong hedges = new AtomicLong();
+
+        void setMaxRetries(int maxRetries) { this.maxRetries = maxRetries; }
+        void setHedging(boolean hedging) { this.hedging = hedging; }
+        void setDeadlineMillis(long deadlineMillis) { this.deadlineMillis = deadlineMillis; }
+
+        boolean isHedging() { return hedging; }
+
+        /**
+         * @return Deadline (epoch millis) for a request starting now
+         */
+        long deadlineFromNow() {
+            return deadlineMillis > 0 ? System.currentTimeMillis() + deadlineMillis : Long.MAX_VALUE;
+        }
+
+        static boolean isRetryable(int statusCode) {
+            return statusCode == 500 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+        }
+
+        /**
+         * Sleep before the next retry
+         * @param failures Number of failed attempts so far
+         * @param deadline Deadline of the request
+         * @return false if no retry is left or it would not finish before the deadline
+         */
+        boolean backoff(int failures, long deadline) {
+            if (failures > maxRetries) {
+                return false;
+            }
+            long ceiling = Math.min(MAX_BACKOFF, BASE_BACKOFF << Math.min(failures - 1, 16));
+            long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            if (System.currentTimeMillis() + delay >= deadline) {
+                return false;
+            }
+            retries.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        synchronized void recordLatency(long millis) {
+            latencies[latencyCount % latencies.length] = millis;
+            latencyCount++;
+        }
+
+        /**
+         * @return p95 of recent latencies, or a fixed delay until enough samples exist
+         */
+        synchronized long hedgeDelayMillis() {
+            int samples = Math.min(latencyCount, latencies.length);
+            if (samples < MIN_LATENCY_SAMPLES) {
+                return DEFAULT_HEDGE_DELAY;
+            }
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(samples * 0.95) - 1];
+        }
+
+        void recordHedge() { hedges.incrementAndGet(); }
+
+        void print() {
+            System.out.printf("Resilience: %d retries, %d hedged requests%n", retries.get(), hedges.get());
+        }
+    }
+
+    /**
+     * Access tokens in rotation, each with its own rate limit budget. Every
+     * request goes to the token with the most headroom; tokens whose budget is
+     * exhausted sit out until their window resets, and tokens the API rejects
+     * are dropped.
+     */
+    private static class TokenPool {
+        private final List<TokenState> rotation = new CopyOnWriteArrayList<>();
+        private final Map<String, TokenState> byToken = new ConcurrentHashMap<>();
+        private final TokenState anonymous = new TokenState(null);
+        private volatile long maxWaitMillis = DEFAULT_MAX_RATE_LIMIT_WAIT * 1000L;
+        private volatile String identity = "anonymous";
+        // Once tokens are configured, requests never fall back to going out anonymously
+        private volatile boolean configured;
+
+        /**
+         * Add a token to the rotation
+         * @param token Access token; empty and duplicate tokens are ignored
+         */
+        synchronized void add(String token) {
+            if (token == null || token.isEmpty() || byToken.containsKey(token)) {
+                return;
+            }
+            TokenState state = new TokenState(token);
+            state.getScheduler().setMaxWaitMillis(maxWaitMillis);
+            byToken.put(token, state);
+            rotation.add(state);
+            configured = true;
+
+            List<String> identities = new ArrayList<>();
+            for (TokenState member : rotation) {
+                identities.add(tokenIdentity(member.getToken()));
+            }
+            Collections.sort(identities);
+            identity = identities.size() == 1 ? identities.get(0) : tokenIdentity(String.join(",", identities));
+        }
+
+        /**
+         * @return Identity of the pool for cache keys
+         */
+        String identity() { return identity; }
+
+        long getMaxWaitMillis() { return maxWaitMillis; }
+
+        synchronized void setMaxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+            anonymous.getScheduler().setMaxWaitMillis(maxWaitMillis);
+            for (TokenState state : byToken.values()) {
+                state.getScheduler().setMaxWaitMillis(maxWaitMillis);
+            }
+        }
+
+        /**
+         * Lease the state of a specific token, outside the rotation
+         * @param token Access token
+         * @return Leased token state; call {@link TokenState#release()} when done
+         */
+        TokenState forToken(String token) {
+            TokenState state = token.isEmpty() ? anonymous : byToken.computeIfAbsent(token, key -> {
+                TokenState created = new TokenState(key);
+                created.getScheduler().setMaxWaitMillis(maxWaitMillis);
+                return created;
+            });
+            state.inFlight.incrementAndGet();
+            return state;
+        }
+
+        /**
+         * Lease the token with the most headroom. If every token is waiting
+         * for its window to reset, the one available soonest is returned and
+         * its scheduler holds the request back.
+         * @return Leased token state; call {@link TokenState#release()} when done
+         * @throws Exception if every token has been rejected
+         */
+        synchronized TokenState select() throws Exception {
+            if (rotation.isEmpty()) {
+                if (configured) {
+                    throw new Exception("Bad credentials: every access token was rejected");
+                }
+                anonymous.inFlight.incrementAndGet();
+                return anonymous;
+            }
+
+            long now = System.currentTimeMillis();
+            TokenState best = null;
+            long bestHeadroom = Long.MIN_VALUE;
+            TokenState soonest = null;
+            long soonestAt = Long.MAX_VALUE;
+            for (TokenState state : rotation) {
+                long availableAt = state.getScheduler().availableAtMillis();
+                if (availableAt <= now) {
+                    long headroom = (long) state.getScheduler().headroom() - state.inFlight.get();
+                    if (headroom > bestHeadroom) {
+                        best = state;
+                        bestHeadroom = headroom;
+                    }
+                } else if (availableAt < soonestAt) {
+                    soonest = state;
+                    soonestAt = availableAt;
+                }
+            }
+
+            TokenState chosen = best != null ? best : soonest;
+            chosen.inFlight.incrementAndGet();
+            return chosen;
+        }
+
+        /**
+         * @return Earliest time at which any token in the rotation may send again
+         */
+        long nextAvailableMillis() {
+            if (rotation.isEmpty()) {
+                return anonymous.getScheduler().availableAtMillis();
+            }
+            long soonest = Long.MAX_VALUE;
+            for (TokenState state : rotation) {
+                soonest = Math.min(soonest, state.getScheduler().availableAtMillis());
+            }
+            return soonest;
+        }
+
+        /**
+         * Take a token out of the rotation after the API rejected it
+         * @param state Rejected token
+         * @return true if other tokens are left to retry with
+         */
+        boolean reject(TokenState state) {
+            state.rejected = true;
+            if (rotation.remove(state)) {
+                System.err.println("Warning: access token " + tokenIdentity(state.getToken())
+                        + " was rejected and removed from rotation");
+            }
+            return !rotation.isEmpty();
+        }
+
+        void print() {
+            if (byToken.isEmpty()) {
+                anonymous.getScheduler().print("anonymous");
+                return;
+            }
+            for (TokenState state : byToken.values()) {
+                String label = "token " + tokenIdentity(state.getToken()).substring(0, 8)
+                        + (state.rejected ? ", rejected" : "");
+                state.getScheduler().print(label);
+            }
+        }
+
+        /**
+         * One token and its rate limit state
+         */
+        static class TokenState {
+            private final String token;
+            private final RateLimitScheduler scheduler = new RateLimitScheduler();
+            private final AtomicInteger inFlight = new AtomicInteger();
+            private volatile boolean rejected;
+
+            TokenState(String token) {
+                this.token = token;
+            }
+
+            public String getToken() { return token; }
+            public RateLimitScheduler getScheduler() { return scheduler; }
+
+            void release() {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Response cache on disk, shared by every CLI process pointed at the same
+     * directory. Entries hold the decoded body with its validators and expire
+     * after a TTL; once the directory grows past its size limit the least
+     * recently used entries are removed. Every write goes to a temporary file
+     * that is atomically moved into place, so readers never see partial entries.
+     */
+    private static class DiskCache {
+        private static final long DEFAULT_TTL = 60000;
+        private static final Pattern MAX_AGE_PATTERN = Pattern.compile("max-age=(\\d+)");
+        private static final String[] STORED_HEADERS = {
+                "ETag", "Last-Modified", "Link", "X-Poll-Interval", "Cache-Control"
+        };
+
+        private final Path directory;
+        private final long maxBytes;
+        private final long ttlMillis;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong renewed = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        /**
+         * @param directory Cache directory, created if missing
+         * @param maxBytes Size limit of all entries together
+         * @param ttlMillis Lifetime of an entry, or 0 to follow Cache-Control max-age
+         * @throws IOException if the directory cannot be created
+         */
+        DiskCache(Path directory, long maxBytes, long ttlMillis) throws IOException {
+            this.directory = Files.createDirectories(directory);
+            this.maxBytes = maxBytes;
+            this.ttlMillis = ttlMillis;
+        }
+
+        /**
+         * @param key Cache key (request URL and token identity)
+         * @return The stored entry, fresh or stale, or null if there is none
+         */
+        Entry get(String key) {
+            Path file = directory.resolve(fileName(key));
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                long expiresAt = Long.parseLong(readLine(in));
+                int statusCode = Integer.parseInt(readLine(in));
+                Map<String, List<String>> headers = new LinkedHashMap<>();
+                String line;
+                while (!(line = readLine(in)).isEmpty()) {
+                    int colon = line.indexOf(':');
+                    headers.put(line.substring(0, colon), Collections.singletonList(line.substring(colon + 1).trim()));
+                }
+                ApiResponse response = new ApiResponse(statusCode, headers);
+                response.readBody(in);
+
+                // The modification time doubles as the LRU access time
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                Entry entry = new Entry(expiresAt, response);
+                (entry.isFresh() ? hits : misses).incrementAndGet();
+                return entry;
+            } catch (IOException | RuntimeException e) {
+                // Missing, concurrently evicted or unreadable: treat as a miss
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+
+        /**
+         * Store a 200 response
+         * @param key Cache key
+         * @param response Response whose body has not been released yet
+         */
+        void put(String key, ApiResponse response) {
+            write(key, response, response);
+        }
+
+        /**
+         * Extend the lifetime of a stale entry the server confirmed with a 304
+         * @param key Cache key
+         * @param stored The stale entry
+         * @param notModified The 304 response
+         */
+        void renew(String key, Entry stored, ApiResponse notModified) {
+            renewed.incrementAndGet();
+            write(key, stored.getResponse(), notModified);
+        }
+
+        private void write(String key, ApiResponse response, ApiResponse freshness) {
+            StringBuilder head = new StringBuilder();
+            head.append(System.currentTimeMillis() + ttlFor(freshness)).append('\n');
+            head.append(response.getStatusCode()).append('\n');
+            for (String name : STORED_HEADERS) {
+                String value = response.getHeader(name);
+                if (value != null) {
+                    head.append(name.toLowerCase()).append(": ").append(value).append('\n');
+                }
+            }
+            head.append('\n');
+
+            try {
+                Path temp = Files.createTempFile(directory, "entry", ".tmp");
+                try {
+                    try (OutputStream out = Files.newOutputStream(temp)) {
+                        out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+                        response.writeBody(out);
+                    }
+                    Files.move(temp, directory.resolve(fileName(key)),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                evict();
+            } catch (IOException e) {
+                // The cache is an optimization; a failed write only costs a later miss
+            }
+        }
+
+        private long ttlFor(ApiResponse response) {
+            if (ttlMillis > 0) {
+                return ttlMillis;
+            }
+            String cacheControl = response.getHeader("Cache-Control");
+            if (cacheControl != null) {
+                Matcher matcher = MAX_AGE_PATTERN.matcher(cacheControl);
+                if (matcher.find()) {
+                    return Long.parseLong(matcher.group(1)) * 1000;
+                }
+            }
+            return DEFAULT_TTL;
+        }
+
+        /**
+         * Delete least recently used entries until the cache fits its size limit
+         */
+        private void evict() throws IOException {
+            List<Path> files = new ArrayList<>();
+            Map<Path, Long> accessed = new HashMap<>();
+            long total = 0;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.cache")) {
+                for (Path file : entries) {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        files.add(file);
+                        accessed.put(file, attributes.lastModifiedTime().toMillis());
+                        total += attributes.size();
+                    } catch (IOException e) {
+                        // Removed by another process meanwhile
+                    }
+                }
+            }
+            if (total <= maxBytes) {
+                return;
+            }
+
+            files.sort(Comparator.comparing(accessed::get));
+            for (Path file : files) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                try {
+                    long size = Files.size(file);
+                    if (Files.deleteIfExists(file)) {
+                        total -= size;
+                    }
+                } catch (IOException e) {
+                    // Removed by another process meanwhile
+                }
+            }
+        }
+
+        private static String fileName(String key) {
+            return sha256Hex(key, 16) + ".cache";
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                line.append((char) b);
+            }
+            if (b == -1 && line.length() == 0) {
+                throw new EOFException("Truncated cache entry");
+            }
+            return line.toString();
+        }
+
+        void print() {
+            System.out.printf("Disk cache: %d fresh hits, %d renewed by 304, %d misses%n",
+                    hits.get(), renewed.get(), misses.get() - renewed.get());
+        }
+
+        /**
+         * A stored response and its expiry time
+         */
+        static class Entry {
+            private final long expiresAt;
+            private final ApiResponse response;
+
+            Entry(long expiresAt, ApiResponse response) {
+                this.expiresAt = expiresAt;
+                this.response = response;
+            }
+
+            public boolean isFresh() { return System.currentTimeMillis() < expiresAt; }
+            public ApiResponse getResponse() { return response; }
+        }
+    }
+
+    /**
+     * Request counters and latency totals, printed with --stats
+     */
+    private static class FetchStats {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong wireBytes = new AtomicLong();
+        private final AtomicLong decodedBytes = new AtomicLong();
+
+        void recordRequest(long nanos) {
+            requests.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+        }
+
+        void print(String transport) {
+            long count = requests.get();
+            System.out.println();
+            System.out.println("Transport: " + transport);
+            System.out.println("JSON scanning: " + (VECTOR_INDEXER != null ? VECTOR_INDEXER : "scalar"));
+            System.out.println("Requests: " + count);
+            if (count > 0) {
+                System.out.printf("Average latency: %.1f ms%n", totalNanos.get() / 1e6 / count);
+            }
+            long wire = wireBytes.get();
+            long decoded = decodedBytes.get();
+            System.out.printf("Transferred: %.1f KB on the wire, %.1f KB decoded (%.1f%% saved)%n",
+                    wire / 1024.0, decoded / 1024.0, decoded == 0 ? 0.0 : (decoded - wire) * 100.0 / decoded);
+        }
+    }
+    
+    /**
+     * Parse JSON response and format activities into readable strings
+     * @param jsonResponse Raw JSON response from GitHub API
+     * @return List of formatted activity strings
+     */
+    public List<String> parseAndFormatActivity(String jsonResponse) {
+        // Parse JSON with a hand-written tokenizer (since we can't use external libraries)
+        return formatActivities(parseEvents(jsonResponse));
+    }
+
+    /**
+     * Format parsed events into readable strings
+     * @param events Parsed events
+     * @return List of formatted activity strings
+     */
+    private List<String> formatActivities(List<GitHubEvent> events) {
+        List<String> activities = new ArrayList<>();
+
+        for (GitHubEvent event : events) {
+            String activity = formatEvent(event);
+            if (activity != null && !activity.isEmpty()) {
+                activities.add(activity);
+            }
+        }
+        
+        return activities;
+    }
+    
+    /**
+     * Parse GitHub events from JSON response in a single pass
+     * @param jsonResponse JSON string
+     * @return List of GitHubEvent objects
+     */
+    private List<GitHubEvent> parseEvents(String jsonResponse) {
+        return parseEvents(jsonResponse.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse GitHub events from a UTF-8 JSON response in a single pass. The
+     * events keep a reference to {@code json} and decode their fields only
+     * when read, so the array must not be modified afterwards.
+     * @param json UTF-8 JSON bytes
+     * @return List of GitHubEvent objects
+     */
+    private List<GitHubEvent> parseEvents(byte[] json) {
+        List<GitHubEvent> events = new ArrayList<>();
+        JsonTokenizer tokenizer = VECTOR_INDEXER != null
+                ? new JsonTokenizer(json, VECTOR_INDEXER.index(json, json.length))
+                : new JsonTokenizer(json);
+
+        try {
+            if (tokenizer.peek() != '[') {
+                return events;
+            }
+            tokenizer.beginArray();
+            while (tokenizer.nextElement()) {
+                if (tokenizer.peek() != '{') {
+                    tokenizer.skipValue();
+                    continue;
+                }
+                int start = tokenizer.getPosition();
+                try {
+                    events.add(readEvent(tokenizer));
+                } catch (IllegalArgumentException e) {
+                    // Drop just this event; if it is not even well-formed, the outer catch ends the page
+                    tokenizer.rewind(start);
+                    tokenizer.skipValue();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Truncated or malformed response: keep the events read so far
+        }
+
+        return events;
+    }
+    
+    /**
+     * Parse a single event from UTF-8 JSON
+     * @param eventJson UTF-8 JSON bytes for single event; kept by the event
+     * @return GitHubEvent object, or null if the JSON is not a valid event
+     */
+    private GitHubEvent parseEvent(byte[] eventJson) {
+        try {
+            return readEvent(new JsonTokenizer(eventJson));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Index one event object: the position of each field needed for display
+     * is recorded, nothing is decoded, and everything else is skipped. Only
+     * the payload members declared by the event's {@link EventType} are
+     * looked at; the rest of the payload is passed over by bracket matching.
+     * @param json Tokenizer positioned at the opening brace of the event
+     * @return GitHubEvent object
+     */
+    private GitHubEvent readEvent(JsonTokenizer json) {
+        return readEvent(json, new GitHubEvent());
+    }
+
+    /**
+     * Index one event object into an existing event, which bulk readers
+     * reuse as a cursor instead of allocating an event per object
+     * @param json Tokenizer positioned at the opening brace of the event
+     * @param event Event to {@link GitHubEvent#reset reset} and fill
+     * @return The event
+     */
+    private GitHubEvent readEvent(JsonTokenizer json, GitHubEvent event) {
+        event.reset(json.getSource());
+        int size = -1;
+        int distinctSize = -1;
+        boolean merged = false;
+
+        json.beginObject();
+        while (json.nextMember()) {
+            json.nextName();
+            if (json.nameIs("id")) {
+                json.indexString(event, GitHubEvent.ID);
+            } else if (json.nameIs("type")) {
+                json.indexString(event, GitHubEvent.TYPE);
+            } else if (json.nameIs("created_at")) {
+                json.indexString(event, GitHubEvent.CREATED_AT);
+            } else if (json.nameIs("actor")) {
+                // enterObject() skips values that are not objects, such as null
+                if (json.enterObject()) {
+                    while (json.nextMember()) {
+                        json.nextName();
+                        if (json.nameIs("login")) {
+                            json.indexString(event, GitHubEvent.ACTOR);
+                        } else {
+                            json.skipValue();
+                        }
+                    }
+                }
+            } else if (json.nameIs("repo")) {
+                if (json.enterObject()) {
+                    while (json.nextMember()) {
+                        json.nextName();
+                        if (json.nameIs("name")) {
+                            json.indexString(event, GitHubEvent.REPO_NAME);
+                        } else {
+                            json.skipValue();
+                        }
+                    }
+                }
+            } else if (json.nameIs("payload")) {
+                if (!json.enterObject()) {
+                    continue;
+                }
+                // GitHub sends the type first; if it has not been seen, read every known member
+                EventType type = event.hasType() ? event.getEventType() : null;
+                while (json.nextMember()) {
+                    json.nextName();
+                    if (type != null ? !type.includes(json) : !EventType.anyIncludes(json)) {
+                        json.skipValue();
+                    } else if (json.nameIs("action")) {
+                        json.indexString(event, GitHubEvent.ACTION);
+                    } else if (json.nameIs("ref_type")) {
+                        json.indexString(event, GitHubEvent.REF_TYPE);
+                    } else if (json.nameIs("ref")) {
+                        json.indexString(event, GitHubEvent.REF);
+                    } else if (json.nameIs("size")) {
+                        size = json.nextInt();
+                    } else if (json.nameIs("distinct_size")) {
+                        distinctSize = json.nextInt();
+                    } else if (json.nameIs("commits")) {
+                        // Only located here; see GitHubEvent.getCommits()
+                        boolean array = json.peek() == '[';
+                        int start = json.getPosition();
+                        json.skipValue();
+                        if (array) {
+                            event.setCommitsSpan(start, json.getPosition());
+                        }
+                    } else if (json.nameIs("release")) {
+                        if (json.enterObject()) {
+                            while (json.nextMember()) {
+                                json.nextName();
+                                if (json.nameIs("tag_name")) {
+                                    json.indexString(event, GitHubEvent.TAG_NAME);
+                                } else {
+                                    json.skipValue();
+                                }
+                            }
+                        }
+                    } else if (json.nameIs("pull_request")) {
+                        if (json.enterObject()) {
+                            while (json.nextMember()) {
+                                json.nextName();
+                                if (json.nameIs("merged")) {
+                                    merged = json.nextLiteralIs("true");
+                                } else {
+                                    json.skipValue();
+                                }
+                            }
+                        }
+                    } else {
+                        json.skipValue();
+                    }
+                }
+            } else {
+                json.skipValue();
+            }
+        }
+
+        // Keep only the payload information relevant to the event type
+        event.getEventType().retain(event);
+        if (size < 0) {
+            // Older payloads without a size: count the commit list, or default to 1
+            size = event.commitsStart >= 0 ? json.countElementsAt(event.commitsStart) : 1;
+        }
+        event.setCommitCount(size);
+        event.setDistinctCommitCount(distinctSize >= 0 ? distinctSize : size);
+        event.setMerged(merged);
+
+        return event;
+    }
+
+    /**
+     * Event types with their own rendering. Each type declares the payload
+     * members it reads; everything else in its payload, such as the full
+     * pull request object embedded in pull request events, is skipped without
+     * being tokenized. Types are resolved once per event, straight from the
+     * response bytes, by a hash table lookup. To support a new type, add a
+     * constant with its name, payload members and rendering.
+     */
+    private enum EventType {
+        PUSH("PushEvent", "size", "distinct_size", "commits") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                int commits = event.getCommitCount();
+                return String.format("- Pushed %d commit%s to %s", commits, commits != 1 ? "s" : "", repo);
+            }
+        },
+        ISSUES("IssuesEvent", "action") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                String action = event.getAction();
+                if ("opened".equals(action)) {
+                    return "- Opened a new issue in " + repo;
+                } else if ("closed".equals(action)) {
+                    return "- Closed an issue in " + repo;
+                } else if (action != null) {
+                    return "- " + capitalize(action) + " an issue in " + repo;
+                }
+                return null;
+            }
+        },
+        ISSUE_COMMENT("IssueCommentEvent") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                return "- Commented on an issue in " + repo;
+            }
+        },
+        PULL_REQUEST("PullRequestEvent", "action", "pull_request") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                String action = event.getAction();
+                if ("opened".equals(action)) {
+                    return "- Opened a pull request in " + repo;
+                } else if ("closed".equals(action)) {
+                    return event.isMerged() ? "- Merged a pull request in " + repo : "- Closed a pull request in " + repo;
+                } else if (action != null) {
+                    return "- " + capitalize(action) + " a pull request in " + repo;
+                }
+                return null;
+            }
+        },
+        PULL_REQUEST_REVIEW("PullRequestReviewEvent") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                return "- Reviewed a pull request in " + repo;
+            }
+        },
+        WATCH("WatchEvent") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                return "- Starred " + repo;
+            }
+        },
+        FORK("ForkEvent") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                return "- Forked " + repo;
+            }
+        },
+        CREATE("CreateEvent", "ref_type", "ref") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                String refType = event.getRefType();
+                String ref = event.getRef() != null ? event.getRef() : "unknown";
+                if ("repository".equals(refType)) {
+                    return "- Created repository " + repo;
+                } else if ("branch".equals(refType)) {
+                    return "- Created branch " + ref + " in " + repo;
+                } else if ("tag".equals(refType)) {
+                    return "- Created tag " + ref + " in " + repo;
+                }
+                return null;
+            }
+        },
+        DELETE("DeleteEvent", "ref_type", "ref") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                String refType = event.getRefType() != null ? event.getRefType() : "branch";
+                String ref = event.getRef() != null ? event.getRef() : "unknown";
+                return "- Deleted " + refType + " " + ref + " in " + repo;
+            }
+        },
+        RELEASE("ReleaseEvent", "action", "release") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                if ("published".equals(event.getAction())) {
+                    return "- Published release " + (event.getRef() != null ? event.getRef() : "unknown") + " in " + repo;
+                }
+                return null;
+            }
+        },
+        PUBLIC("PublicEvent") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                return "- Made " + repo + " public";
+            }
+        },
+        GOLLUM("GollumEvent") {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                return "- Edited the wiki of " + repo;
+            }
+        },
+        OTHER(null) {
+            @Override
+            String format(GitHubEvent event, String repo) {
+                // For unhandled event types, return a generic message
+                return "- " + event.getType().replace("Event", "") + " in " + repo;
+            }
+        };
+
+        private static final EventType[] TABLE = new EventType[64];
+        private static final String[] ALL_MEMBERS = {
+            "action", "ref_type", "ref", "size", "distinct_size", "commits", "release", "pull_request"
+        };
+
+        static {
+            for (EventType type : values()) {
+                if (type.typeName != null) {
+                    int slot = type.typeName.hashCode() & (TABLE.length - 1);
+                    while (TABLE[slot] != null) {
+                        slot = (slot + 1) & (TABLE.length - 1);
+                    }
+                    TABLE[slot] = type;
+                }
+            }
+        }
+
+        private final String typeName;
+        private final String[] members;
+
+        EventType(String typeName, String... members) {
+            this.typeName = typeName;
+            this.members = members;
+        }
+
+        /**
+         * Render an event of this type
+         * @param event Event to render
+         * @param repo Repository name of the event
+         * @return Activity line, or null if the event is not worth showing
+         */
+        abstract String format(GitHubEvent event, String repo);
+
+        /**
+         * @param json UTF-8 JSON bytes
+         * @param start Offset of the type name
+         * @param end Offset just past the type name
+         * @return The type with that name, or {@link #OTHER}
+         */
+        static EventType resolve(byte[] json, int start, int end) {
+            // Same hash as String.hashCode() for ASCII names
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + json[i];
+            }
+            for (int slot = hash & (TABLE.length - 1); TABLE[slot] != null; slot = (slot + 1) & (TABLE.length - 1)) {
+                if (JsonTokenizer.regionEquals(json, start, end, TABLE[slot].typeName)) {
+                    return TABLE[slot];
+                }
+            }
+            return OTHER;
+        }
+
+        /**
+         * @param name Event type name, e.g. {@code PushEvent}
+         * @return The type with that name, or {@link #OTHER}
+         */
+        static EventType resolve(String name) {
+            for (int slot = name.hashCode() & (TABLE.length - 1); TABLE[slot] != null; slot = (slot + 1) & (TABLE.length - 1)) {
+                if (TABLE[slot].typeName.equals(name)) {
+                    return TABLE[slot];
+                }
+            }
+            return OTHER;
+        }
+
+        /**
+         * @param json Tokenizer that has just read a payload member name
+         * @return true if this type reads the member
+         */
+        boolean includes(JsonTokenizer json) {
+            return includes(json, members);
+        }
+
+        /**
+         * @param json Tokenizer that has just read a payload member name
+         * @return true if any type reads the member
+         */
+        static boolean anyIncludes(JsonTokenizer json) {
+            return includes(json, ALL_MEMBERS);
+        }
+
+        private static boolean includes(JsonTokenizer json, String[] members) {
+            for (String member : members) {
+                if (json.nameIs(member)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Drop payload fields this type does not read, which were indexed
+         * because the payload came before the type
+         * @param event Indexed event
+         */
+        void retain(GitHubEvent event) {
+            retain(event, "action", GitHubEvent.ACTION);
+            retain(event, "ref_type", GitHubEvent.REF_TYPE);
+            retain(event, "ref", GitHubEvent.REF);
+            retain(event, "release", GitHubEvent.TAG_NAME);
+        }
+
+        private void retain(GitHubEvent event, String member, int field) {
+            for (String included : members) {
+                if (included.equals(member)) {
+                    return;
+                }
+            }
+            event.clear(field);
+        }
+    }
+
+    /**
+     * Stage one of a two-stage JSON parser: find the position of every
+     * structural character ({@code { } [ ] : ,} outside strings) and of every
+     * unescaped quote, so {@link JsonTokenizer} can jump over strings and
+     * skipped subtrees instead of walking them byte by byte.
+     * <p>
+     * The SIMD implementation, {@code VectorStructuralIndexer}, lives in its
+     * own source file because it needs the incubating Vector API: compile it
+     * and run with {@code --add-modules jdk.incubator.vector} to enable it.
+     * Without it, events are parsed by the scalar tokenizer alone.
+     */
+    interface StructuralIndexer {
+        /**
+         * @param json UTF-8 JSON bytes
+         * @param length Number of bytes to index
+         * @return Ascending indexed positions, followed by {@code length} as a sentinel
+         */
+        int[] index(byte[] json, int length);
+
+        /**
+         * @return The Vector API indexer, or null if it is not compiled in,
+         *         the module is not enabled, or the CPU has no usable vectors
+         */
+        static StructuralIndexer loadVector() {
+            try {
+                return (StructuralIndexer) Class.forName("VectorStructuralIndexer").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Byte-at-a-time {@link StructuralIndexer}, the reference the vector
+     * implementation is checked and benchmarked against
+     */
+    static class ScalarStructuralIndexer implements StructuralIndexer {
+        @Override
+        public int[] index(byte[] json, int length) {
+            int[] positions = new int[Math.max(16, length / 4)];
+            int count = 0;
+            boolean inString = false;
+            for (int i = 0; i < length; i++) {
+                byte b = json[i];
+                if (inString) {
+                    if (b == '\\') {
+                        i++;
+                        continue;
+                    } else if (b != '"') {
+                        continue;
+                    }
+                    inString = false;
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b != '{' && b != '}' && b != '[' && b != ']' && b != ':' && b != ',') {
+                    continue;
+                }
+                if (count == positions.length - 1) {
+                    positions = Arrays.copyOf(positions, positions.length * 2);
+                }
+                positions[count++] = i;
+            }
+            positions[count] = length;
+            return positions;
+        }
+
+        @Override
+        public String toString() {
+            return "scalar";
+        }
+    }
+
+    /**
+     * Reads GH Archive dumps: newline-delimited events in the schema of the
+     * events API, usually gzipped per hour. Each file is decompressed on its
+     * own fork-join worker and cut into newline-aligned chunks; the chunks
+     * are parsed in parallel, and only the events of the requested users are
+     * kept. Uncompressed dumps are memory-mapped instead of read, so memory
+     * use does not grow with the size of the file.
+     */
+    private class ArchiveReader {
+        // Chunks parsed ahead of the decompressor, per file
+        private final int maxPendingChunks = 2 * ForkJoinPool.commonPool().getParallelism();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong compressedBytes = new AtomicLong();
+        private final AtomicLong decodedBytes = new AtomicLong();
+        // Uncompressed dumps, read as they are
+        private final AtomicLong plainBytes = new AtomicLong();
+        private final AtomicLong events = new AtomicLong();
+        private final AtomicLong matches = new AtomicLong();
+        private long elapsedNanos;
+
+        /**
+         * Expand directories into the dumps they contain, in name (and so
+         * chronological) order
+         * @param paths Files and directories
+         * @return Archive files
+         * @throws IOException if a path does not exist or cannot be listed
+         */
+        static List<Path> listFiles(List<String> paths) throws IOException {
+            List<Path> files = new ArrayList<>();
+            for (String name : paths) {
+                Path path = Paths.get(name);
+                if (!Files.isDirectory(path)) {
+                    if (!Files.isRegularFile(path)) {
+                        throw new IOException("Archive not found: " + name);
+                    }
+                    files.add(path);
+                    continue;
+                }
+                List<Path> dumps = new ArrayList<>();
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(path, "*.{json,json.gz}")) {
+                    for (Path entry : entries) {
+                        dumps.add(entry);
+                    }
+                }
+                Collections.sort(dumps);
+                files.addAll(dumps);
+            }
+            return files;
+        }
+
+        /**
+         * @param files Archive files, oldest first
+         * @param logins Actor logins to keep (case-insensitive)
+         * @return Events of those actors, in archive order
+         * @throws IOException if an archive cannot be read
+         */
+        EventBatch read(List<Path> files, List<String> logins) throws IOException {
+            long started = System.nanoTime();
+            List<ForkJoinTask<EventBatch>> tasks = new ArrayList<>();
+            for (Path file : files) {
+                tasks.add(ForkJoinPool.commonPool().submit(() -> readFile(file, logins)));
+            }
+
+            EventBatch result = new EventBatch();
+            try {
+                for (ForkJoinTask<EventBatch> task : tasks) {
+                    result.addAll(task.join());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                for (ForkJoinTask<EventBatch> task : tasks) {
+                    task.cancel(true);
+                }
+                elapsedNanos += System.nanoTime() - started;
+            }
+            return result;
+        }
+
+        private EventBatch readFile(Path file, List<String> logins) {
+            if (!file.toString().endsWith(".gz")) {
+                return readMappedFile(file, logins);
+            }
+            EventBatch result = new EventBatch();
+            Deque<ForkJoinTask<EventBatch>> pending = new ArrayDeque<>();
+            try (CountingInputStream compressed = new CountingInputStream(Files.newInputStream(file), compressedBytes);
+                 InputStream in = new GZIPInputStream(compressed, 64 * 1024)) {
+                byte[] buffer = new byte[ARCHIVE_CHUNK_SIZE];
+                int filled = 0;
+                boolean eof = false;
+                while (!eof) {
+                    int read = in.readNBytes(buffer, filled, buffer.length - filled);
+                    filled += read;
+                    decodedBytes.addAndGet(read);
+                    eof = filled < buffer.length;
+
+                    int cut = filled;
+                    if (!eof) {
+                        while (cut > 0 && buffer[cut - 1] != '\n') {
+                            cut--;
+                        }
+                        if (cut == 0) {
+                            // A single line longer than the buffer
+                            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                            continue;
+                        }
+                    }
+
+                    // The partial last line starts the next chunk; blanking it in this one saves a copy
+                    byte[] chunk = buffer;
+                    buffer = new byte[Math.max(ARCHIVE_CHUNK_SIZE, filled - cut + 1)];
+                    System.arraycopy(chunk, cut, buffer, 0, filled - cut);
+                    Arrays.fill(chunk, cut, chunk.length, (byte) ' ');
+                    filled -= cut;
+
+                    pending.add(ForkJoinTask.adapt(() -> parseChunk(chunk, logins)).fork());
+                    while (pending.size() > maxPendingChunks) {
+                        result.addAll(pending.poll().join());
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    result.addAll(pending.poll().join());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read archive " + file + ": " + e.getMessage(), e);
+            } finally {
+                for (ForkJoinTask<EventBatch> task : pending) {
+                    task.cancel(true);
+                }
+            }
+            files.incrementAndGet();
+            return result;
+        }
+
+        /**
+         * Read an uncompressed dump through a memory mapping. Split points are
+         * found by scanning the mapping in place; each split is then copied
+         * into one of a few chunk buffers that are reused as soon as their
+         * split is parsed, so neither the heap nor the mapped window grows
+         * with the file.
+         */
+        private EventBatch readMappedFile(Path file, List<String> logins) {
+            EventBatch result = new EventBatch();
+            Deque<ForkJoinTask<EventBatch>> pending = new ArrayDeque<>();
+            ConcurrentLinkedDeque<byte[]> free = new ConcurrentLinkedDeque<>();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long windowStart = 0;
+                MappedByteBuffer window = null;
+                long position = 0;
+                while (position < size) {
+                    if (window == null || position + ARCHIVE_CHUNK_SIZE > windowStart + window.capacity()
+                            && windowStart + window.capacity() < size) {
+                        windowStart = position;
+                        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                                Math.min(ARCHIVE_MAP_WINDOW, size - windowStart));
+                    }
+                    int start = (int) (position - windowStart);
+                    int end = Math.min(start + ARCHIVE_CHUNK_SIZE, window.capacity());
+                    if (windowStart + end < size) {
+                        int cut = end;
+                        while (cut > start && window.get(cut - 1) != '\n') {
+                            cut--;
+                        }
+                        if (cut == start) {
+                            // A single line longer than a chunk: take it whole
+                            cut = end;
+                            while (cut < window.capacity() && window.get(cut - 1) != '\n') {
+                                cut++;
+                            }
+                            if (window.get(cut - 1) != '\n' && windowStart + cut < size) {
+                                if (start > 0) {
+                                    // The line runs past the window: map a new one starting at the line
+                                    window = null;
+                                    continue;
+                                }
+                                throw new IOException("Line longer than " + ARCHIVE_MAP_WINDOW + " bytes at offset " + position);
+                            }
+                        }
+                        end = cut;
+                    }
+
+                    int length = end - start;
+                    byte[] chunk = length <= ARCHIVE_CHUNK_SIZE ? free.poll() : null;
+                    if (chunk == null) {
+                        chunk = new byte[Math.max(ARCHIVE_CHUNK_SIZE, length)];
+                    }
+                    window.get(start, chunk, 0, length);
+                    Arrays.fill(chunk, length, chunk.length, (byte) ' ');
+                    position += length;
+                    plainBytes.addAndGet(length);
+
+                    byte[] split = chunk;
+                    pending.add(ForkJoinTask.adapt(() -> {
+                        try {
+                            return parseChunk(split, logins);
+                        } finally {
+                            if (split.length == ARCHIVE_CHUNK_SIZE) {
+                                free.push(split);
+                            }
+                        }
+                    }).fork());
+                    while (pending.size() > maxPendingChunks) {
+                        result.addAll(pending.poll().join());
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    result.addAll(pending.poll().join());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read archive " + file + ": " + e.getMessage(), e);
+            } finally {
+                for (ForkJoinTask<EventBatch> task : pending) {
+                    task.cancel(true);
+                }
+            }
+            files.incrementAndGet();
+            return result;
+        }
+
+        /**
+         * Parse one newline-aligned chunk of events
+         * @param chunk Whole lines of event JSON, padded with spaces
+         * @param logins Actor logins to keep
+         * @return Matching events, which do not refer to the chunk
+         */
+        private EventBatch parseChunk(byte[] chunk, List<String> logins) {
+            EventBatch result = new EventBatch();
+            // One cursor for the whole chunk; only matches are copied out, into columns
+            GitHubEvent event = new GitHubEvent();
+            JsonTokenizer json = VECTOR_INDEXER != null
+                    ? new JsonTokenizer(chunk, VECTOR_INDEXER.index(chunk, chunk.length))
+                    : new JsonTokenizer(chunk);
+            long count = 0;
+            char c;
+            while ((c = json.peek()) != 0) {
+                int start = json.getPosition();
+                try {
+                    if (c != '{') {
+                        throw new IllegalArgumentException("Expected an event at offset " + start);
+                    }
+                    readEvent(json, event);
+                } catch (IllegalArgumentException e) {
+                    json.skipLine();
+                    continue;
+                }
+                count++;
+                for (String login : logins) {
+                    if (event.actorIs(login)) {
+                        result.add(event);
+                        break;
+                    }
+                }
+            }
+            events.addAndGet(count);
+            matches.addAndGet(result.size());
+            return result;
+        }
+
+        void print() {
+            double seconds = elapsedNanos / 1e9;
+            long decoded = decodedBytes.get() + plainBytes.get();
+            System.out.println();
+            System.out.println("JSON scanning: " + (VECTOR_INDEXER != null ? VECTOR_INDEXER : "scalar"));
+            System.out.printf("Archive: %d files, %.1f MB compressed (%.1f MB decompressed), %.1f MB uncompressed%n",
+                    files.get(), compressedBytes.get() / 1e6, decodedBytes.get() / 1e6, plainBytes.get() / 1e6);
+            System.out.printf("Events: %d read, %d matched%n", events.get(), matches.get());
+            System.out.printf("Throughput: %.1f MB/s of JSON, %.2f s total%n",
+                    seconds == 0 ? 0.0 : decoded / 1e6 / seconds, seconds);
+        }
+    }
+
+    /**
+     * Minimal pull tokenizer over UTF-8 JSON bytes. Every byte is visited at
+     * most once: member names are compared in place, string values are only
+     * located (see {@link #indexString}), and values the caller is not
+     * interested in are skipped by tracking nesting depth and string state.
+     * Given a {@link StructuralIndexer structural index}, strings and skipped
+     * containers are passed over by jumping between indexed positions instead.
+     * Malformed input raises {@link IllegalArgumentException}.
+     */
+    private static class JsonTokenizer {
+        private final byte[] json;
+        private final int[] structurals;
+        private int cursor;
+        private int position;
+        private int nameStart;
+        private int nameEnd;
+
+        JsonTokenizer(byte[] json) {
+            this(json, null);
+        }
+
+        /**
+         * @param json UTF-8 JSON bytes
+         * @param structurals Structural index of {@code json}, or null to scan directly
+         */
+        JsonTokenizer(byte[] json, int[] structurals) {
+            this.json = json;
+            this.structurals = structurals;
+        }
+
+        byte[] getSource() {
+            return json;
+        }
+
+        int getPosition() {
+            return position;
+        }
+
+        /**
+         * Move back to an earlier offset, e.g. to skip over an element that
+         * could not be read
+         * @param offset Offset already passed
+         */
+        void rewind(int offset) {
+            position = offset;
+            if (structurals != null) {
+                while (cursor > 0 && structurals[cursor - 1] >= offset) {
+                    cursor--;
+                }
+            }
+        }
+
+        /**
+         * Skip past the next newline, e.g. to recover from a malformed line of
+         * newline-delimited JSON
+         */
+        void skipLine() {
+            while (position < json.length && json[position++] != '\n') {
+                // Skip
+            }
+        }
+
+        /**
+         * @return Next significant character without consuming it, or 0 at the end
+         */
+        char peek() {
+            while (position < json.length) {
+                byte b = json[position];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return (char) b;
+                }
+                position++;
+            }
+            return 0;
+        }
+
+        void beginObject() {
+            expect('{');
+        }
+
+        void beginArray() {
+            expect('[');
+        }
+
+        /**
+         * Enter the current value if it is an object, otherwise skip it
+         * @return true if an object was entered
+         */
+        boolean enterObject() {
+            if (peek() == '{') {
+                position++;
+                return true;
+            }
+            skipValue();
+            return false;
+        }
+
+        /**
+         * Advance to the next member of the current object
+         * @return false (after consuming the closing brace) if there are no more members
+         */
+        boolean nextMember() {
+            return next('}');
+        }
+
+        /**
+         * Advance to the next element of the current array
+         * @return false (after consuming the closing bracket) if there are no more elements
+         */
+        boolean nextElement() {
+            return next(']');
+        }
+
+        private boolean next(char close) {
+            char c = peek();
+            if (c == ',') {
+                position++;
+                c = peek();
+            }
+            if (c == close) {
+                position++;
+                return false;
+            }
+            if (c == 0) {
+                throw error("Unexpected end of input");
+            }
+            return true;
+        }
+
+        /**
+         * Read the name of the current object member, with its colon consumed;
+         * compare it with {@link #nameIs}
+         */
+        void nextName() {
+            expect('"');
+            nameStart = position;
+            skipStringContents();
+            nameEnd = position - 1;
+            expect(':');
+        }
+
+        /**
+         * @param name ASCII member name
+         * @return true if the member name just read is {@code name}
+         */
+        boolean nameIs(String name) {
+            return regionEquals(json, nameStart, nameEnd, name);
+        }
+
+        /**
+         * Record where the current value is in the event if it is a string,
+         * otherwise skip it
+         * @param event Event being indexed
+         * @param field Field of the event the value belongs to
+         */
+        void indexString(GitHubEvent event, int field) {
+            if (peek() != '"') {
+                skipValue();
+                return;
+            }
+            position++;
+            int start = position;
+            boolean escaped = skipStringContents();
+            event.setSpan(field, start, position - 1, escaped);
+        }
+
+        /**
+         * @param literal Expected literal, e.g. {@code true}
+         * @return true if the current value is exactly {@code literal}; it is consumed either way
+         */
+        boolean nextLiteralIs(String literal) {
+            char c = peek();
+            int start = position;
+            skipValue();
+            return c != '"' && regionEquals(json, start, position, literal);
+        }
+
+        /**
+         * @return The current value if it is a non-negative integer that fits
+         *         in an int, otherwise -1; it is consumed either way
+         */
+        int nextInt() {
+            peek();
+            int start = position;
+            skipValue();
+            if (position == start || position - start > 9) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = start; i < position; i++) {
+                byte b = json[i];
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                value = value * 10 + (b - '0');
+            }
+            return value;
+        }
+
+        /**
+         * @return The current value if it is a string, otherwise null; it is consumed either way
+         */
+        String nextStringValue() {
+            if (peek() != '"') {
+                skipValue();
+                return null;
+            }
+            position++;
+            int start = position;
+            boolean escaped = skipStringContents();
+            return decode(json, start, position - 1, escaped);
+        }
+
+        /**
+         * Count the elements of an array elsewhere in the input, without
+         * moving this tokenizer
+         * @param start Offset of the opening bracket
+         * @return Number of elements
+         */
+        int countElementsAt(int start) {
+            JsonTokenizer array = new JsonTokenizer(json, structurals);
+            array.position = start;
+            return array.countElements();
+        }
+
+        /**
+         * Count the elements of the current array, skipping over them
+         * @return Number of elements
+         */
+        int countElements() {
+            int count = 0;
+            beginArray();
+            while (nextElement()) {
+                skipValue();
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Skip the current value, whatever its type
+         */
+        void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                position++;
+                skipStringContents();
+            } else if (c == '{' || c == '[') {
+                skipContainer();
+            } else if (c == 0 || c == ',' || c == '}' || c == ']' || c == ':') {
+                throw error("Expected a value");
+            } else {
+                while (position < json.length) {
+                    byte b = json[position];
+                    if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                        break;
+                    }
+                    position++;
+                }
+            }
+        }
+
+        /**
+         * Skip an object or array by bracket matching: only quotes, escapes
+         * and brackets are looked at, nothing inside is tokenized
+         */
+        private void skipContainer() {
+            int depth = 0;
+            if (structurals != null) {
+                // Quotes come in pairs and nothing inside strings is indexed, so only brackets matter
+                int next = nextStructural();
+                while (next < json.length) {
+                    byte b = json[next];
+                    if (b == '{' || b == '[') {
+                        depth++;
+                    } else if ((b == '}' || b == ']') && --depth == 0) {
+                        position = next + 1;
+                        return;
+                    }
+                    next = structurals[++cursor];
+                }
+                throw error("Unexpected end of input");
+            }
+            while (position < json.length) {
+                byte b = json[position++];
+                if (b == '"') {
+                    skipStringContents();
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    return;
+                }
+            }
+            throw error("Unexpected end of input");
+        }
+
+        /**
+         * Skip to just past the closing quote of the string being read
+         * @return true if the string contains escape sequences
+         */
+        private boolean skipStringContents() {
+            boolean escaped = false;
+            if (structurals != null) {
+                // The next indexed position is the closing quote
+                int start = position;
+                int end = nextStructural();
+                if (end >= json.length) {
+                    throw error("Unterminated string");
+                }
+                position = end + 1;
+                for (int i = start; i < end && !escaped; i++) {
+                    escaped = json[i] == '\\';
+                }
+                return escaped;
+            }
+            while (position < json.length) {
+                byte b = json[position++];
+                if (b == '\\') {
+                    escaped = true;
+                    position++;
+                } else if (b == '"') {
+                    return escaped;
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        /**
+         * @return First indexed position at or after the current position,
+         *         or the input length if there is none
+         */
+        private int nextStructural() {
+            while (structurals[cursor] < position) {
+                cursor++;
+            }
+            return structurals[cursor];
+        }
+
+        private void expect(char expected) {
+            if (peek() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+            position++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + position);
+        }
+
+        /**
+         * @return true if bytes {@code [start, end)} are the ASCII string {@code value}
+         */
+        static boolean regionEquals(byte[] json, int start, int end, String value) {
+            if (end - start != value.length()) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (json[start + i] != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Decode the contents of a JSON string, resolving escape sequences
+         * @param json UTF-8 JSON bytes
+         * @param start Offset just past the opening quote
+         * @param end Offset of the closing quote
+         * @param escaped Whether the string contains escape sequences
+         * @return Decoded string
+         */
+        static String decode(byte[] json, int start, int end, boolean escaped) {
+            if (!escaped) {
+                return new String(json, start, end - start, StandardCharsets.UTF_8);
+            }
+            StringBuilder decoded = new StringBuilder(end - start);
+            int segment = start;
+            int i = start;
+            while (i < end) {
+                if (json[i] != '\\') {
+                    i++;
+                    continue;
+                }
+                decoded.append(new String(json, segment, i - segment, StandardCharsets.UTF_8));
+                byte escape = i + 1 < end ? json[i + 1] : (byte) '\\';
+                i += 2;
+                switch (escape) {
+                    case 'b': decoded.append('\b'); break;
+                    case 'f': decoded.append('\f'); break;
+                    case 'n': decoded.append('\n'); break;
+                    case 'r': decoded.append('\r'); break;
+                    case 't': decoded.append('\t'); break;
+                    case 'u':
+                        if (i + 4 > end) {
+                            throw new IllegalArgumentException("Truncated unicode escape at offset " + i);
+                        }
+                        try {
+                            decoded.append((char) Integer.parseInt(new String(json, i, 4, StandardCharsets.US_ASCII), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid unicode escape at offset " + i);
+                        }
+                        i += 4;
+                        break;
+                    default:
+                        decoded.append((char) escape);
+                        break;
+                }
+                segment = i;
+            }
+            return decoded.append(new String(json, segment, end - segment, StandardCharsets.UTF_8)).toString();
+        }
+    }
+    
+    /**
+     * Format a single GitHub event into a readable string
+     * @param event GitHubEvent object
+     * @return Formatted activity string
+     */
+    private String formatEvent(GitHubEvent event) {
+        String repo = event.getRepoName();
+        if (!event.hasType() || repo == null) {
+            return null;
+        }
+        String activity = event.getEventType().format(event, repo);
+        if (activity != null && showCommits && event.getEventType() == EventType.PUSH) {
+            activity += formatCommits(event);
+        }
+        return activity;
+    }
+
+    /**
+     * List the commits of a push event below its activity line
+     * @param event Push event
+     * @return Lines to append, each starting with a line separator
+     */
+    private static String formatCommits(GitHubEvent event) {
+        String newline = System.lineSeparator();
+        StringBuilder lines = new StringBuilder();
+        int distinct = event.getDistinctCommitCount();
+        if (distinct < event.getCommitCount()) {
+            lines.append(" (").append(distinct).append(" new)");
+        }
+        List<Commit> commits = event.getCommits();
+        for (Commit commit : commits) {
+            String sha = commit.getSha() != null ? commit.getSha() : "";
+            // Only the summary line of the message
+            String message = commit.getMessage() != null ? commit.getMessage().split("\\R", 2)[0] : "";
+            lines.append(newline).append("    ").append(sha, 0, Math.min(7, sha.length())).append(' ').append(message);
+            if (commit.getAuthorName() != null) {
+                lines.append(" (").append(commit.getAuthorName()).append(')');
+            }
+        }
+        if (commits.size() < event.getCommitCount() && !commits.isEmpty()) {
+            lines.append(newline).append("    ... and ").append(event.getCommitCount() - commits.size()).append(" more");
+        }
+        return lines.toString();
+    }
+    
+    /**
+     * Capitalize the first letter of a string
+     * @param str Input string
+     * @return Capitalized string
+     */
+    private static String capitalize(String str) {
+        if (str == null || str.isEmpty()) {
+            return str;
+        }
+        return str.substring(0, 1).toUpperCase() + str.substring(1);
+    }
+    
+    /**
+     * Display the formatted activities in the terminal
+     * @param username GitHub username
+     * @param activities List of formatted activity strings
+     */
+    public void displayActivity(String username, List<String> activities) {
+        System.out.print(formatActivityReport(username, activities, MAX_DISPLAYED));
+    }
+
+    /**
+     * Build the text printed by {@link #displayActivity}, so concurrent
+     * lookups can print each report in one piece
+     * @param username GitHub username
+     * @param activities List of formatted activity strings
+     * @param maxLines Maximum number of activities to include
+     * @return Report text, ending with a line separator
+     */
+    private String formatActivityReport(String username, List<String> activities, int maxLines) {
+        String newline = System.lineSeparator();
+        if (activities.isEmpty()) {
+            return "No recent activity found for user '" + username + "'" + newline;
+        }
+
+        StringBuilder report = new StringBuilder(formatActivityHeader(username));
+
+        // Limit to the most recent activities
+        int count = Math.min(activities.size(), maxLines);
+        for (int i = 0; i < count; i++) {
+            report.append(activities.get(i)).append(newline);
+        }
+        return report.toString();
+    }
+    
+    /**
+     * @param username GitHub username
+     * @return Heading printed above a user's activities, ending with a blank line
+     */
+    private String formatActivityHeader(String username) {
+        String newline = System.lineSeparator();
+        return "Recent activity for " + username + ":" + newline + newline;
+    }
+
+    /**
+     * Bounded, lock-free table of canonical strings for the small vocabulary
+     * that repeats across events: event types, actions, ref types and names,
+     * repository and actor names. Values are looked up straight from the
+     * response bytes, so a value seen before costs neither a String
+     * allocation nor retained heap. Each value has one slot; a colliding
+     * value replaces it, which keeps the table bounded like a direct-mapped
+     * cache. Concurrent lookups may race to fill a slot, which only costs a
+     * duplicate String.
+     */
+    private static class StringDictionary {
+        // Longer values are rarely repeated and are not worth a slot
+        private static final int MAX_LENGTH = 100;
+
+        private final AtomicReferenceArray<String> table;
+        private final int mask;
+
+        /**
+         * @param capacity Number of slots, a power of two
+         */
+        StringDictionary(int capacity) {
+            this.table = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * @param bytes UTF-8 bytes
+         * @param start Offset of the value
+         * @param end Offset just past the value
+         * @return Canonical String of the value
+         */
+        String lookup(byte[] bytes, int start, int end) {
+            int length = end - start;
+            if (length > MAX_LENGTH) {
+                return new String(bytes, start, length, StandardCharsets.UTF_8);
+            }
+            // Same hash as String.hashCode() for ASCII, so candidates are rejected cheaply
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                byte b = bytes[i];
+                if (b < 0) {
+                    return new String(bytes, start, length, StandardCharsets.UTF_8);
+                }
+                hash = 31 * hash + b;
+            }
+
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            String candidate = table.getAcquire(slot);
+            if (candidate != null && candidate.hashCode() == hash && candidate.length() == length) {
+                int i = 0;
+                while (i < length && candidate.charAt(i) == bytes[start + i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return candidate;
+                }
+            }
+            String value = new String(bytes, start, length, StandardCharsets.ISO_8859_1);
+            table.setRelease(slot, value);
+            return value;
+        }
+    }
+
+    /**
+     * Columnar store of events for passes over many of them, such as archive
+     * mode: each field is a primitive array indexed by row, so there is no
+     * object per event to allocate, trace or chase, and filters and sorts are
+     * plain loops over arrays. Events are appended from a parsed
+     * {@link GitHubEvent}, which bulk readers reuse as a cursor; string
+     * fields are stored as codes into the batch's own dictionary, and the
+     * id and creation time as numbers. Batches are filled by one thread and
+     * then merged with {@link #addAll}.
+     */
+    private static class EventBatch {
+        // Marks an absent creation time; also the "no boundary" value of EventQuery.sinceMillis()
+        static final long NO_TIME = Long.MIN_VALUE;
+        // Marks an absent string field
+        private static final int NONE = -1;
+        private static final EventType[] TYPES = EventType.values();
+        // Rows are sorted on keys holding the creation second above the row number
+        private static final int ROW_BITS = 30;
+
+        private int size;
+        // EventType ordinal, or -1 when the event has no type
+        private byte[] type;
+        // Name of types without their own rendering (EventType.OTHER)
+        private int[] typeName;
+        private long[] id;
+        private long[] createdAtMillis;
+        private int[] actor;
+        private int[] repo;
+        private int[] action;
+        private int[] refType;
+        private int[] ref;
+        private int[] commitCount;
+        private int[] distinctCommitCount;
+        private final BitSet merged = new BitSet();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        EventBatch() {
+            this(64);
+        }
+
+        /**
+         * @param capacity Initial number of rows
+         */
+        EventBatch(int capacity) {
+            type = new byte[capacity];
+            typeName = new int[capacity];
+            id = new long[capacity];
+            createdAtMillis = new long[capacity];
+            actor = new int[capacity];
+            repo = new int[capacity];
+            action = new int[capacity];
+            refType = new int[capacity];
+            ref = new int[capacity];
+            commitCount = new int[capacity];
+            distinctCommitCount = new int[capacity];
+        }
+
+        /**
+         * @return Number of events
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Append an event. Nothing refers to the event or its source bytes
+         * afterwards, so a cursor can be refilled right away.
+         * @param event Parsed event
+         */
+        void add(GitHubEvent event) {
+            ensureCapacity(size + 1);
+            int row = size++;
+            EventType eventType = event.hasType() ? event.getEventType() : null;
+            type[row] = eventType != null ? (byte) eventType.ordinal() : -1;
+            typeName[row] = eventType == EventType.OTHER ? code(event.getType()) : NONE;
+            id[row] = event.getNumericId();
+            createdAtMillis[row] = event.getCreatedAtMillis();
+            actor[row] = code(event.getActor());
+            repo[row] = code(event.getRepoName());
+            action[row] = code(event.getAction());
+            refType[row] = code(event.getRefType());
+            ref[row] = code(event.getRef());
+            commitCount[row] = event.getCommitCount();
+            distinctCommitCount[row] = event.getDistinctCommitCount();
+            if (event.isMerged()) {
+                merged.set(row);
+            }
+        }
+
+        /**
+         * Append all events of another batch, after those of this one
+         * @param other Batch to copy
+         */
+        void addAll(EventBatch other) {
+            int count = other.size;
+            ensureCapacity(size + count);
+            int[] recode = new int[other.strings.size()];
+            for (int i = 0; i < recode.length; i++) {
+                recode[i] = code(other.strings.get(i));
+            }
+            System.arraycopy(other.type, 0, type, size, count);
+            System.arraycopy(other.id, 0, id, size, count);
+            System.arraycopy(other.createdAtMillis, 0, createdAtMillis, size, count);
+            System.arraycopy(other.commitCount, 0, commitCount, size, count);
+            System.arraycopy(other.distinctCommitCount, 0, distinctCommitCount, size, count);
+            copyCodes(other.typeName, typeName, recode, count);
+            copyCodes(other.actor, actor, recode, count);
+            copyCodes(other.repo, repo, recode, count);
+            copyCodes(other.action, action, recode, count);
+            copyCodes(other.refType, refType, recode, count);
+            copyCodes(other.ref, ref, recode, count);
+            for (int row = other.merged.nextSetBit(0); row >= 0; row = other.merged.nextSetBit(row + 1)) {
+                merged.set(size + row);
+            }
+            size += count;
+        }
+
+        private void copyCodes(int[] from, int[] to, int[] recode, int count) {
+            for (int row = 0; row < count; row++) {
+                int code = from[row];
+                to[size + row] = code == NONE ? NONE : recode[code];
+            }
+        }
+
+        /**
+         * @return Rows ordered newest first; rows created in the same second
+         *         keep their reverse order, and rows without a time come last
+         */
+        int[] newestFirst() {
+            if (size > 1 << ROW_BITS) {
+                throw new IllegalStateException("Too many events to sort: " + size);
+            }
+            long[] keys = new long[size];
+            for (int row = 0; row < size; row++) {
+                long millis = createdAtMillis[row];
+                long second = millis == NO_TIME ? 0 : Math.max(Math.floorDiv(millis, 1000), 0) + 1;
+                keys[row] = second << ROW_BITS | row;
+            }
+            Arrays.sort(keys);
+            int[] rows = new int[size];
+            for (int i = 0; i < size; i++) {
+                rows[i] = (int) (keys[size - 1 - i] & ((1 << ROW_BITS) - 1));
+            }
+            return rows;
+        }
+
+        /**
+         * @param rows Rows to look at, in the order to keep
+         * @param login Actor login, compared case-insensitively
+         * @param sinceMillis Oldest creation time to keep, or {@link #NO_TIME}
+         * @return The rows of that actor that are not older than the boundary
+         */
+        int[] select(int[] rows, String login, long sinceMillis) {
+            // Compare the login with each distinct actor once, not with each row
+            boolean[] actorMatches = new boolean[strings.size()];
+            for (int code = 0; code < actorMatches.length; code++) {
+                actorMatches[code] = login.equalsIgnoreCase(strings.get(code));
+            }
+            int[] selected = new int[rows.length];
+            int count = 0;
+            for (int row : rows) {
+                int code = actor[row];
+                long millis = createdAtMillis[row];
+                if (code != NONE && actorMatches[code] && (millis == NO_TIME || millis >= sinceMillis)) {
+                    selected[count++] = row;
+                }
+            }
+            return Arrays.copyOf(selected, count);
+        }
+
+        /**
+         * Turn a row back into an event, for rendering
+         * @param row Row number
+         * @return New event with the row's fields
+         */
+        GitHubEvent event(int row) {
+            GitHubEvent event = new GitHubEvent();
+            if (type[row] >= 0) {
+                EventType eventType = TYPES[type[row]];
+                event.setType(eventType == EventType.OTHER ? string(typeName[row]) : eventType.typeName);
+            }
+            event.setId(id[row] >= 0 ? Long.toString(id[row]) : null);
+            event.setCreatedAt(createdAtMillis[row] != NO_TIME ? Instant.ofEpochMilli(createdAtMillis[row]).toString() : null);
+            event.setActor(string(actor[row]));
+            event.setRepoName(string(repo[row]));
+            event.setAction(string(action[row]));
+            event.setRefType(string(refType[row]));
+            event.setRef(string(ref[row]));
+            event.setCommitCount(commitCount[row]);
+            event.setDistinctCommitCount(distinctCommitCount[row]);
+            event.setMerged(merged.get(row));
+            return event;
+        }
+
+        private int code(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = strings.size();
+                strings.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        private String string(int code) {
+            return code == NONE ? null : strings.get(code);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= type.length) {
+                return;
+            }
+            int length = Math.max(capacity, type.length * 2);
+            type = Arrays.copyOf(type, length);
+            typeName = Arrays.copyOf(typeName, length);
+            id = Arrays.copyOf(id, length);
+            createdAtMillis = Arrays.copyOf(createdAtMillis, length);
+            actor = Arrays.copyOf(actor, length);
+            repo = Arrays.copyOf(repo, length);
+            action = Arrays.copyOf(action, length);
+            refType = Arrays.copyOf(refType, length);
+            ref = Arrays.copyOf(ref, length);
+            commitCount = Arrays.copyOf(commitCount, length);
+            distinctCommitCount = Arrays.copyOf(distinctCommitCount, length);
+        }
+    }
+
+    /**
+     * Inner class to represent a GitHub event. Events parsed from a response
+     * keep a reference to its bytes and the position of each string field;
+     * a field is decoded to a {@code String} the first time it is read.
+     */
+    private static class GitHubEvent {
+        static final int ID = 0;
+        static final int TYPE = 1;
+        static final int REPO_NAME = 2;
+        static final int ACTION = 3;
+        static final int REF_TYPE = 4;
+        static final int REF = 5;
+        static final int TAG_NAME = 6;
+        static final int CREATED_AT = 7;
+        static final int ACTOR = 8;
+        private static final int FIELD_COUNT = 9;
+
+        // Fields drawn from a small vocabulary, decoded through the shared dictionary
+        private static final int INTERNED_FIELDS =
+                1 << TYPE | 1 << REPO_NAME | 1 << ACTION | 1 << REF_TYPE | 1 << REF | 1 << ACTOR;
+
+        private byte[] source;
+        // Start and end offset of each field in source; start is -1 when the field is absent
+        private int[] spans;
+        private int escapedFields;
+        private final String[] values = new String[FIELD_COUNT];
+        // Compacted numeric id and creation time (epoch seconds), when they round-trip exactly
+        private long numericId = -1;
+        private long createdAtSeconds = Long.MIN_VALUE;
+        private EventType eventType;
+        private int commitCount;
+        private int distinctCommitCount;
+        // The payload's commit list: [commitsStart, commitsEnd) of commitsSource, which is
+        // source until the event is compacted; commitsStart is -1 when there is no list
+        private byte[] commitsSource;
+        private int commitsStart = -1;
+        private int commitsEnd;
         private boolean merged;
+
+        GitHubEvent() {
+            this(null);
+        }
+
+        GitHubEvent(byte[] source) {
+            this.source = source;
+            this.spans = new int[FIELD_COUNT * 2];
+            Arrays.fill(spans, -1);
+        }
+
+        /**
+         * Forget everything about the event, so it can be filled again from
+         * other source bytes
+         * @param source UTF-8 JSON bytes the new spans will refer to
+         */
+        void reset(byte[] source) {
+            this.source = source;
+            if (spans == null) {
+                spans = new int[FIELD_COUNT * 2];
+            }
+            Arrays.fill(spans, -1);
+            Arrays.fill(values, null);
+            escapedFields = 0;
+            numericId = -1;
+            createdAtSeconds = Long.MIN_VALUE;
+            eventType = null;
+            commitCount = 0;
+            distinctCommitCount = 0;
+            commitsSource = null;
+            commitsStart = -1;
+            merged = false;
+        }
+
+        /**
+         * Record where the push payload's commit list is in the source bytes
+         * @param start Offset of the opening bracket
+         * @param end Offset just past the closing bracket
+         */
+        void setCommitsSpan(int start, int end) {
+            commitsSource = source;
+            commitsStart = start;
+            commitsEnd = end;
+        }
+
+        /**
+         * Decode the commits of a push event. The commit list is only located
+         * while parsing; it is read here, in place, each time this is called.
+         * @return Commits listed in the payload (GitHub lists at most 20), or
+         *         an empty list if there are none or the event was compacted
+         *         without them
+         */
+        List<Commit> getCommits() {
+            if (commitsStart < 0) {
+                return Collections.emptyList();
+            }
+            List<Commit> commits = new ArrayList<>();
+            JsonTokenizer json = new JsonTokenizer(commitsSource);
+            json.rewind(commitsStart);
+            try {
+                json.beginArray();
+                while (json.nextElement()) {
+                    if (!json.enterObject()) {
+                        continue;
+                    }
+                    Commit commit = new Commit();
+                    while (json.nextMember()) {
+                        json.nextName();
+                        if (json.nameIs("sha")) {
+                            commit.sha = json.nextStringValue();
+                        } else if (json.nameIs("message")) {
+                            commit.message = json.nextStringValue();
+                        } else if (json.nameIs("distinct")) {
+                            commit.distinct = json.nextLiteralIs("true");
+                        } else if (json.nameIs("author")) {
+                            if (json.enterObject()) {
+                                while (json.nextMember()) {
+                                    json.nextName();
+                                    if (json.nameIs("name")) {
+                                        commit.authorName = json.nextStringValue();
+                                    } else {
+                                        json.skipValue();
+                                    }
+                                }
+                            }
+                        } else {
+                            json.skipValue();
+                        }
+                    }
+                    commits.add(commit);
+                }
+            } catch (IllegalArgumentException e) {
+                // Keep the commits read so far
+            }
+            return commits;
+        }
+
+        /**
+         * Record where a string field is in the source bytes
+         * @param field Field index
+         * @param start Offset just past the opening quote
+         * @param end Offset of the closing quote
+         * @param escaped Whether the value contains escape sequences
+         */
+        void setSpan(int field, int start, int end, boolean escaped) {
+            spans[field * 2] = start;
+            spans[field * 2 + 1] = end;
+            if (escaped) {
+                escapedFields |= 1 << field;
+            } else {
+                escapedFields &= ~(1 << field);
+            }
+            values[field] = null;
+            if (field == TYPE) {
+                eventType = null;
+            }
+        }
+
+        /**
+         * Forget a field, e.g. a payload field not relevant to the event type
+         * @param field Field index
+         */
+        void clear(int field) {
+            if (spans != null) {
+                spans[field * 2] = -1;
+            }
+            values[field] = null;
+            if (field == TYPE) {
+                eventType = null;
+            } else if (field == ID) {
+                numericId = -1;
+            } else if (field == CREATED_AT) {
+                createdAtSeconds = Long.MIN_VALUE;
+            }
+        }
+
+        /**
+         * @return true if the event has a type
+         */
+        boolean hasType() {
+            return values[TYPE] != null || spans != null && spans[TYPE * 2] >= 0;
+        }
+
+        /**
+         * Decode every field and let go of the response bytes, for events that
+         * are kept around (cached pages). Repeated values come from the shared
+         * dictionary, so a compacted event holds little more than references;
+         * the unique id and creation time are kept as numbers when they convert
+         * back to the same text. Must be called before the event is shared.
+         * @param keepCommits true to keep a copy of the commit list for
+         *                    {@link #getCommits()}, false to drop it
+         */
+        void compact(boolean keepCommits) {
+            if (spans == null) {
+                return;
+            }
+            if (keepCommits && commitsStart >= 0) {
+                commitsSource = Arrays.copyOfRange(commitsSource, commitsStart, commitsEnd);
+                commitsEnd -= commitsStart;
+                commitsStart = 0;
+            } else {
+                commitsSource = null;
+                commitsStart = -1;
+            }
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                get(field);
+            }
+            getEventType();
+            source = null;
+            spans = null;
+
+            String id = values[ID];
+            if (id != null) {
+                byte[] digits = id.getBytes(StandardCharsets.ISO_8859_1);
+                numericId = parseId(digits, 0, digits.length);
+                if (numericId >= 0) {
+                    values[ID] = null;
+                }
+            }
+            String createdAt = values[CREATED_AT];
+            if (createdAt != null) {
+                try {
+                    Instant instant = Instant.parse(createdAt);
+                    if (instant.getNano() == 0 && instant.toString().equals(createdAt)) {
+                        createdAtSeconds = instant.getEpochSecond();
+                        values[CREATED_AT] = null;
+                    }
+                } catch (DateTimeParseException e) {
+                    // Keep the text
+                }
+            }
+        }
+
+        /**
+         * @return The id as a number, read without decoding it, or -1 if it
+         *         is absent or does not convert back to the same text
+         */
+        long getNumericId() {
+            int start = spans != null ? spans[ID * 2] : -1;
+            if (values[ID] != null || start < 0 || (escapedFields & (1 << ID)) != 0) {
+                if (numericId >= 0 || getId() == null) {
+                    return numericId;
+                }
+                byte[] digits = getId().getBytes(StandardCharsets.ISO_8859_1);
+                return parseId(digits, 0, digits.length);
+            }
+            return parseId(source, start, spans[ID * 2 + 1]);
+        }
+
+        /**
+         * @return Creation time in epoch milliseconds, read without decoding
+         *         it when it is a plain UTC timestamp, or {@link EventBatch#NO_TIME}
+         *         if it is absent or invalid
+         */
+        long getCreatedAtMillis() {
+            int start = spans != null ? spans[CREATED_AT * 2] : -1;
+            if (start >= 0 && values[CREATED_AT] == null && (escapedFields & (1 << CREATED_AT)) == 0) {
+                long millis = parseTimestamp(source, start, spans[CREATED_AT * 2 + 1]);
+                if (millis != EventBatch.NO_TIME) {
+                    return millis;
+                }
+            } else if (spans == null && createdAtSeconds != Long.MIN_VALUE) {
+                return createdAtSeconds * 1000;
+            }
+            if (getCreatedAt() == null) {
+                return EventBatch.NO_TIME;
+            }
+            try {
+                return Instant.parse(getCreatedAt()).toEpochMilli();
+            } catch (DateTimeParseException | ArithmeticException e) {
+                return EventBatch.NO_TIME;
+            }
+        }
+
+        /**
+         * @return Decimal digits as a number, or -1 unless they are at most 18
+         *         digits without leading zeros
+         */
+        private static long parseId(byte[] bytes, int start, int end) {
+            int length = end - start;
+            if (length == 0 || length > 18 || length > 1 && bytes[start] == '0') {
+                return -1;
+            }
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                byte b = bytes[i];
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                value = value * 10 + (b - '0');
+            }
+            return value;
+        }
+
+        /**
+         * @return Epoch milliseconds of a {@code yyyy-MM-ddTHH:mm:ssZ}
+         *         timestamp, or {@link EventBatch#NO_TIME} for anything else
+         */
+        private static long parseTimestamp(byte[] bytes, int start, int end) {
+            if (end - start != 20 || bytes[start + 4] != '-' || bytes[start + 7] != '-' || bytes[start + 10] != 'T'
+                    || bytes[start + 13] != ':' || bytes[start + 16] != ':' || bytes[start + 19] != 'Z') {
+                return EventBatch.NO_TIME;
+            }
+            int year = digits(bytes, start, 4);
+            int month = digits(bytes, start + 5, 2);
+            int day = digits(bytes, start + 8, 2);
+            int hour = digits(bytes, start + 11, 2);
+            int minute = digits(bytes, start + 14, 2);
+            int second = digits(bytes, start + 17, 2);
+            if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                    || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return EventBatch.NO_TIME;
+            }
+            if (day > 28 && day > LocalDate.of(year, month, 1).lengthOfMonth()) {
+                return EventBatch.NO_TIME;
+            }
+            long days = LocalDate.of(year, month, day).toEpochDay();
+            return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L;
+        }
+
+        private static int digits(byte[] bytes, int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        /**
+         * @return Type of the event, resolved once from the response bytes;
+         *         {@link EventType#OTHER} for types without their own rendering
+         */
+        EventType getEventType() {
+            EventType type = eventType;
+            if (type == null) {
+                int start = spans != null ? spans[TYPE * 2] : -1;
+                if (values[TYPE] != null || start < 0 || (escapedFields & (1 << TYPE)) != 0) {
+                    type = getType() != null ? EventType.resolve(getType()) : EventType.OTHER;
+                } else {
+                    type = EventType.resolve(source, start, spans[TYPE * 2 + 1]);
+                }
+                eventType = type;
+            }
+            return type;
+        }
+
+        /**
+         * Compare the actor's login with a username without decoding it
+         * @param login GitHub username, compared case-insensitively
+         * @return true if this event was performed by that user
+         */
+        boolean actorIs(String login) {
+            int start = spans != null ? spans[ACTOR * 2] : -1;
+            if (values[ACTOR] != null || start < 0 || (escapedFields & (1 << ACTOR)) != 0) {
+                return login.equalsIgnoreCase(get(ACTOR));
+            }
+            int end = spans[ACTOR * 2 + 1];
+            if (end - start != login.length()) {
+                return false;
+            }
+            for (int i = 0; i < login.length(); i++) {
+                if (Character.toLowerCase((char) source[start + i]) != Character.toLowerCase(login.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String get(int field) {
+            String value = values[field];
+            if (value != null) {
+                return value;
+            }
+            if (spans == null) {
+                if (field == ID && numericId >= 0) {
+                    return Long.toString(numericId);
+                } else if (field == CREATED_AT && createdAtSeconds != Long.MIN_VALUE) {
+                    return Instant.ofEpochSecond(createdAtSeconds).toString();
+                }
+                return null;
+            }
+            if (spans[field * 2] < 0) {
+                return null;
+            }
+            int start = spans[field * 2];
+            int end = spans[field * 2 + 1];
+            if ((escapedFields & (1 << field)) != 0) {
+                value = JsonTokenizer.decode(source, start, end, true);
+            } else if ((INTERNED_FIELDS & (1 << field)) != 0) {
+                value = DICTIONARY.lookup(source, start, end);
+            } else {
+                value = JsonTokenizer.decode(source, start, end, false);
+            }
+            values[field] = value;
+            return value;
+        }
+
+        private void set(int field, String value) {
+            clear(field);
+            values[field] = value;
+        }
         
         // Getters and setters
-        public String getType() { return type; }
-        public void setType(String type) { this.type = type; }
+        public String getId() { return get(ID); }
+        public void setId(String id) { set(ID, id); }
+
+        public String getType() { return get(TYPE); }
+        public void setType(String type) { set(TYPE, type); }
         
-        public String getRepoName() { return repoName; }
-        public void setRepoName(String repoName) { this.repoName = repoName; }
+        public String getRepoName() { return get(REPO_NAME); }
+        public void setRepoName(String repoName) { set(REPO_NAME, repoName); }
         
-        public String getAction() { return action; }
-        public void setAction(String action) { this.action = action; }
+        public String getAction() { return get(ACTION); }
+        public void setAction(String action) { set(ACTION, action); }
         
-        public String getRefType() { return refType; }
-        public void setRefType(String refType) { this.refType = refType; }
+        public String getRefType() { return get(REF_TYPE); }
+        public void setRefType(String refType) { set(REF_TYPE, refType); }
         
-        public String getRef() { return ref; }
-        public void setRef(String ref) { this.ref = ref; }
+        public String getRef() { return get(REF) != null ? get(REF) : get(TAG_NAME); }
+        public void setRef(String ref) { set(REF, ref); }
         
         public int getCommitCount() { return commitCount; }
         public void setCommitCount(int commitCount) { this.commitCount = commitCount; }
+
+        public int getDistinctCommitCount() { return distinctCommitCount; }
+        public void setDistinctCommitCount(int distinctCommitCount) { this.distinctCommitCount = distinctCommitCount; }
+
         
         public boolean isMerged() { return merged; }
         public void setMerged(boolean merged) { this.merged = merged; }
+
+        public String getActor() { return get(ACTOR); }
+        public void setActor(String actor) { set(ACTOR, actor); }
+
+        public String getCreatedAt() { return get(CREATED_AT); }
+        public void setCreatedAt(String createdAt) { set(CREATED_AT, createdAt); }
+    }
+
+    /**
+     * One commit of a push event, see {@link GitHubEvent#getCommits()}
+     */
+    private static class Commit {
+        private String sha;
+        private String message;
+        private String authorName;
+        private boolean distinct;
+
+        public String getSha() { return sha; }
+        public String getMessage() { return message; }
+        public String getAuthorName() { return authorName; }
+        public boolean isDistinct() { return distinct; }
     }
-}
\ No newline at end of file
+}
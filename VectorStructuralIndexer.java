@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD structural indexer for {@link GitHubActivity}, in the style of stage 1
+ * of simdjson: each 64-byte block is compared against the structural
+ * characters a whole vector at a time, the comparisons are folded into 64-bit
+ * masks, and escapes and string interiors are resolved with bit arithmetic
+ * rather than a per-byte state machine.
+ * <p>
+ * This class uses the incubating Vector API, so it is compiled and run with
+ * {@code --add-modules jdk.incubator.vector}; GitHubActivity loads it by name
+ * and falls back to scalar scanning when it is missing. Run it directly to
+ * benchmark both backends:
+ * <pre>
+ * javac GitHubActivity.java
+ * javac --add-modules jdk.incubator.vector VectorStructuralIndexer.java
+ * java --add-modules jdk.incubator.vector VectorStructuralIndexer [events.json]
+ * </pre>
+ */
+class VectorStructuralIndexer implements GitHubActivity.StructuralIndexer {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() > 64
+            ? ByteVector.SPECIES_512 : ByteVector.SPECIES_PREFERRED;
+    private static final long EVEN_BITS = 0x5555555555555555L;
+    private static final int BLOCK = 64;
+
+    // Keeps the benchmark's results observable so the JIT cannot drop the work
+    private static volatile long sink;
+
+    VectorStructuralIndexer() {
+        if (SPECIES.length() < 16) {
+            // The Vector API still works without SIMD registers, but far slower than scalar code
+            throw new UnsupportedOperationException("No SIMD support for " + SPECIES);
+        }
+    }
+
+    @Override
+    public int[] index(byte[] json, int length) {
+        int[] positions = new int[Math.max(BLOCK + 1, length / 4)];
+        int count = 0;
+        long prevEscaped = 0;
+        long prevInString = 0;
+        byte[] tail = null;
+
+        for (int block = 0; block < length; block += BLOCK) {
+            byte[] source = json;
+            int offset = block;
+            if (block + BLOCK > length) {
+                // Pad the last partial block with spaces, which are never structural
+                tail = new byte[BLOCK];
+                Arrays.fill(tail, (byte) ' ');
+                System.arraycopy(json, block, tail, 0, length - block);
+                source = tail;
+                offset = 0;
+            }
+
+            long quote = 0;
+            long backslash = 0;
+            long structural = 0;
+            for (int i = 0; i < BLOCK; i += SPECIES.length()) {
+                ByteVector bytes = ByteVector.fromArray(SPECIES, source, offset + i);
+                // Setting bit 5 folds '[' and ']' onto '{' and '}'
+                ByteVector folded = bytes.or((byte) 0x20);
+                quote |= bytes.eq((byte) '"').toLong() << i;
+                backslash |= bytes.eq((byte) '\\').toLong() << i;
+                structural |= folded.eq((byte) '{')
+                        .or(folded.eq((byte) '}'))
+                        .or(bytes.eq((byte) ':'))
+                        .or(bytes.eq((byte) ','))
+                        .toLong() << i;
+            }
+
+            // Characters preceded by an odd-length run of backslashes are escaped
+            backslash &= ~prevEscaped;
+            long followsEscape = backslash << 1 | prevEscaped;
+            long oddSequenceStarts = backslash & ~EVEN_BITS & ~followsEscape;
+            long sequencesStartingOnEvenBits = oddSequenceStarts + backslash;
+            prevEscaped = Long.compareUnsigned(sequencesStartingOnEvenBits, backslash) < 0 ? 1 : 0;
+            long escaped = (EVEN_BITS ^ (sequencesStartingOnEvenBits << 1)) & followsEscape;
+
+            // Bits between an opening and a closing quote are inside a string
+            quote &= ~escaped;
+            long inString = prefixXor(quote) ^ prevInString;
+            prevInString = inString >> 63;
+
+            long bits = (structural & ~inString) | quote;
+            if (count + BLOCK >= positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            while (bits != 0) {
+                positions[count++] = block + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        positions[count] = length;
+        return positions;
+    }
+
+    /**
+     * @return Each bit set to the parity of the bits at or below it
+     */
+    private static long prefixXor(long bits) {
+        bits ^= bits << 1;
+        bits ^= bits << 2;
+        bits ^= bits << 4;
+        bits ^= bits << 8;
+        bits ^= bits << 16;
+        bits ^= bits << 32;
+        return bits;
+    }
+
+    @Override
+    public String toString() {
+        return "vector (" + SPECIES.vectorBitSize() + "-bit)";
+    }
+
+    /**
+     * Benchmark the scalar and vector indexers on a JSON file, or on a
+     * generated page of events with large pull request payloads
+     * @param args Optional path to a JSON file
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        byte[] json = args.length > 0 ? Files.readAllBytes(Paths.get(args[0])) : sampleEvents(2000);
+        GitHubActivity.StructuralIndexer[] backends = {
+            new GitHubActivity.ScalarStructuralIndexer(), new VectorStructuralIndexer()
+        };
+
+        int[] expected = backends[0].index(json, json.length);
+        int[] actual = backends[1].index(json, json.length);
+        int size = 0;
+        while (expected[size] != json.length) {
+            size++;
+        }
+        if (!Arrays.equals(expected, 0, size + 1, actual, 0, size + 1)) {
+            System.out.println("Error: vector index differs from scalar index");
+            System.exit(1);
+        }
+        System.out.printf("Input: %.1f MB, %d structural positions%n", json.length / 1e6, size);
+
+        for (GitHubActivity.StructuralIndexer backend : backends) {
+            // Warm up, then time enough iterations to run for about a second
+            for (int i = 0; i < 20; i++) {
+                sink += backend.index(json, json.length)[0];
+            }
+            int iterations = 0;
+            long started = System.nanoTime();
+            long elapsed;
+            do {
+                sink += backend.index(json, json.length)[0];
+                iterations++;
+                elapsed = System.nanoTime() - started;
+            } while (elapsed < 1_000_000_000L);
+            System.out.printf("%-16s %6.2f GB/s%n", backend + ":", (double) json.length * iterations / elapsed);
+        }
+    }
+
+    private static byte[] sampleEvents(int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(40000000000L + i).append("\",\"type\":\"PullRequestEvent\",")
+                    .append("\"actor\":{\"id\":").append(i).append(",\"login\":\"user").append(i % 7)
+                    .append("\",\"url\":\"https://api.github.com/users/user").append(i % 7).append("\"},")
+                    .append("\"repo\":{\"id\":").append(i).append(",\"name\":\"owner/repo").append(i % 13)
+                    .append("\"},\"payload\":{\"action\":\"closed\",\"number\":").append(i)
+                    .append(",\"pull_request\":{\"title\":\"Fix \\\"quoted\\\" path C:\\\\dir\",")
+                    .append("\"body\":\"").append("Line with {braces}, [brackets]: and commas. ".repeat(8))
+                    .append("\",\"labels\":[{\"name\":\"bug\"},{\"name\":\"help wanted\"}],")
+                    .append("\"head\":{\"ref\":\"feature-").append(i).append("\",\"sha\":\"")
+                    .append(Integer.toHexString(i * 0x9E3779B1)).append("\"},\"merged\":true}},")
+                    .append("\"public\":true,\"created_at\":\"2024-01-01T00:00:00Z\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}